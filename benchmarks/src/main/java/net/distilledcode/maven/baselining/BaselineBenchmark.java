@@ -0,0 +1,64 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.Baseline;
+import aQute.bnd.differ.DiffPluginImpl;
+import aQute.bnd.osgi.Instructions;
+import aQute.libg.reporter.ReporterAdapter;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the steps of baselining a bundle, as performed by {@code BaselineMojo}, on
+ * synthetic bundles of different sizes: computing the API tree of a bundle, and
+ * computing both API trees and diffing them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BaselineBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int classes;
+
+    private File older;
+
+    private File newer;
+
+    @Setup
+    public void setUp() throws Exception {
+        final File directory = new File(System.getProperty("synthetic.bundles", "target/synthetic-bundles"));
+        older = SyntheticBundles.older(directory, classes);
+        newer = SyntheticBundles.newer(directory, classes);
+    }
+
+    @Benchmark
+    public ApiTree apiTree() throws Exception {
+        return BaselineTreeCache.createApiTree(newer, new DiffPluginImpl(), new SystemStreamLog());
+    }
+
+    @Benchmark
+    public Baseline baseline() throws Exception {
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        final ApiTree n = BaselineTreeCache.createApiTree(newer, differ, new SystemStreamLog());
+        final ApiTree o = BaselineTreeCache.createApiTree(older, differ, new SystemStreamLog());
+        final Baseline baseline = new Baseline(new ReporterAdapter(), differ);
+        baseline.baseline(n.getTree(), n.getExports(), o.getTree(), o.getExports(), new Instructions());
+        return baseline;
+    }
+}
@@ -0,0 +1,60 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures selecting the baseline version from the versions available in a repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BaselineVersionSelectorBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int versions;
+
+    private ArtifactVersion current;
+
+    private List<ArtifactVersion> available;
+
+    @Setup
+    public void setUp() {
+        available = new ArrayList<ArtifactVersion>(versions);
+        for (int i = 0; i < versions; i++) {
+            final int major = i / 10000;
+            final int minor = (i / 100) % 100;
+            final int micro = i % 100;
+            final String qualifier = i % 7 == 0 ? "-SNAPSHOT" : "";
+            available.add(new DefaultArtifactVersion(major + "." + minor + "." + micro + qualifier));
+        }
+        // repositories don't list versions in order
+        Collections.shuffle(available, new Random(42));
+        current = new DefaultArtifactVersion((versions / 10000) + "." + ((versions / 100) % 100) + ".50-SNAPSHOT");
+    }
+
+    @Benchmark
+    public ArtifactVersion selectBaselineVersion() {
+        return BaselineVersionSelector.selectBaselineVersion(current, available);
+    }
+}
@@ -0,0 +1,76 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.Baseline;
+import aQute.bnd.differ.DiffPluginImpl;
+import aQute.bnd.osgi.Instructions;
+import aQute.libg.reporter.ReporterAdapter;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures formatting the explanation of all findings of a diff, without the cost of
+ * actually logging them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExplanationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int classes;
+
+    private List<Baseline.Info> infos;
+
+    @Setup
+    public void setUp() throws Exception {
+        final File directory = new File(System.getProperty("synthetic.bundles", "target/synthetic-bundles"));
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        final ApiTree n = BaselineTreeCache.createApiTree(SyntheticBundles.newer(directory, classes), differ, new SystemStreamLog());
+        final ApiTree o = BaselineTreeCache.createApiTree(SyntheticBundles.older(directory, classes), differ, new SystemStreamLog());
+        final Baseline baseline = new Baseline(new ReporterAdapter(), differ);
+        infos = new ArrayList<Baseline.Info>(
+                baseline.baseline(n.getTree(), n.getExports(), o.getTree(), o.getExports(), new Instructions()));
+    }
+
+    @Benchmark
+    public void explain(final Blackhole blackhole) {
+        final ExplanationWriter writer = new ExplanationWriter(new BlackholeLog(blackhole), 0);
+        for (final Baseline.Info info : infos) {
+            writer.explain(info.packageDiff);
+        }
+        writer.finish();
+    }
+
+    private static class BlackholeLog extends SystemStreamLog {
+
+        private final Blackhole blackhole;
+
+        private BlackholeLog(final Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void info(final CharSequence content) {
+            blackhole.consume(content);
+        }
+    }
+}
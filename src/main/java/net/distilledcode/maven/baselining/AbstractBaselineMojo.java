@@ -0,0 +1,1144 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.version.Version;
+import aQute.bnd.differ.Baseline;
+import aQute.bnd.differ.DiffPluginImpl;
+import aQute.bnd.osgi.Instructions;
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.service.diff.Differ;
+import aQute.libg.reporter.ReporterAdapter;
+
+import net.distilledcode.maven.baselining.BaselineMetrics.Phase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.metadata.ArtifactMetadataRetrievalException;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionRequest;
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.OverConstrainedVersionException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.repository.RepositorySystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Manifest;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static net.distilledcode.maven.baselining.BaselineVersionSelector.selectBaselineVersion;
+
+/**
+ * Common configuration and functionality of the baselining goals.
+ */
+public abstract class AbstractBaselineMojo extends AbstractMojo {
+
+    public static final String BUNDLE_SYMBOLIC_NAME = "Bundle-SymbolicName";
+
+    public static final String MSG_NO_BASELINE = "No baseline version found";
+
+    public static final String MSG_BASELINING = "Baselining against version %s";
+
+    public static final String MSG_RAISE_VERSION = "Please raise the version of package %s to %s (old: %s -> new: %s)";
+
+    public static final String MSG_LOWER_VERSION = "Please lower the version of package %s to %s (old: %s -> new: %s)";
+
+    public static final String MSG_RAISE_BUNDLE_VERSION = "Please raise the bundle version to %s (old: %s -> new: %s)";
+
+    public static final String MSG_NO_API_CHANGES = "No API changes found.";
+
+    public static final String MSG_NO_PACKAGES = "No exported packages match the configured includes and excludes.";
+
+    public static final String MSG_FAILURE = "There were API changes, please adjust the following exported package versions.\n\n";
+
+    @Component
+    protected MavenSession session;
+
+    @Component
+    private RepositorySystem repositorySystem;
+
+    @Component
+    private ArtifactMetadataSource artifactMetadataSource;
+
+    @Component
+    private MojoExecution mojoExecution;
+
+    /**
+     * Whether or not to explain why an export version needs to be raised.
+     */
+    @Parameter(property = "baselining.baseline.explain", defaultValue = "false")
+    private boolean explain;
+
+    /**
+     * The maximum number of findings to report per module if {@code explain} is enabled.
+     * Further findings are only counted. {@code 0} reports all findings.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.explainLimit", defaultValue = "1000")
+    private int explainLimit;
+
+    /**
+     * Whether or not to write a machine-readable report of the results to
+     * {@code target/baselining-report.json}.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.report", defaultValue = "false")
+    private boolean report;
+
+    /**
+     * Deprecated: Whether or not to fail the build if exported version numbers need to be upgraded.
+     *
+     * If {@code enforcement} is set to anything other than {@code lowerAndUpperBound} (the default),
+     * this option is ignored.
+     *
+     * @since 1.0.2
+     * @deprecated Superseded by {@code enforcement}. {@code lowerAndUpperBound} is equivalent
+     * to {@code failOnError=true}, {@code none} to failOnError=false.
+     */
+    @Deprecated
+    @Parameter(defaultValue = "true")
+    private boolean failOnError;
+
+    /**
+     * The {@code enforcement} allows controlling when the build should fail. Valid values
+     * are:
+     * <li>
+     * lowerAndUpperBound (default): Enforce that export versions are incremented as required
+     * but are not set to a higher value. Fails the build otherwise.
+     * <li>
+     * lowerBound: Enforce that export versions are incremented as required, but allows
+     * increments that are higher than necessary. Fails the build otherwise.
+     * <li>
+     * none: The output is purely informational. Never fails the build.
+     *
+     * @since 1.0.4
+     */
+    @Parameter(property = "baselining.baseline.enforcement", defaultValue = "lowerAndUpperBound")
+    private Enforcement enforcement;
+
+    /**
+     * Setting the {@code enforceBundleVersion} allows controlling if the build should fail if
+     * the new bundle version does not match the suggested bundle version.
+     *
+     * @since 1.0.8
+     */
+    @Parameter(property = "baselining.baseline.enforceBundleVersion", defaultValue = "false")
+    private boolean enforceBundleVersion;
+
+    /*
+     * If set to true the plugin execution will be skipped.
+     *
+     * @since 1.0.4
+     */
+    @Parameter(property = "baselining.baseline.skip", defaultValue = "false")
+    protected boolean skip;
+
+    /**
+     * Whether or not to cache the API trees of released baseline artifacts in the
+     * {@code cacheDirectory}. Released artifacts never change, so caching their API
+     * trees avoids parsing the same baseline JAR over and over again.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.cache", defaultValue = "true")
+    private boolean cache;
+
+    /**
+     * The directory in which cached API trees of baseline artifacts are stored.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.cacheDirectory", defaultValue = "${settings.localRepository}/.baselining-cache")
+    private File cacheDirectory;
+
+    /**
+     * The maximum number of API trees of baseline bundles kept in memory during a build
+     * session. Baselines used repeatedly within the session, e.g. the same baseline artifact
+     * of several modules or executions, are then parsed only once. If the modules configure
+     * different sizes, the largest one applies and the others are warned about. The trees are
+     * shared regardless of the modules' {@code cache} configuration. {@code 0} disables
+     * keeping API trees in memory for the module.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.sessionCacheSize", defaultValue = "32")
+    private int sessionCacheSize;
+
+    /**
+     * The loopback port of a baselining server started with the {@code server} goal. If set,
+     * bundles are diffed by the server, which keeps parsed baselines and its compiled code warm
+     * between builds. If no server is listening, bundles are diffed in-process. Ignored if
+     * {@code explain} or {@code lowMemory} is enabled. {@code 0} disables using a server.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.serverPort", defaultValue = "0")
+    private int serverPort;
+
+    /**
+     * Whether or not to baseline against the API signature attached to the baseline by the
+     * {@code api-signature} goal, if available. The signature is much smaller than the
+     * bundle and does not need to be parsed. Otherwise, or if the signature was written with
+     * another bnd version, the baseline bundle is used. Only enable this if the baselines
+     * publish signatures, as every build looks them up in the remote repositories.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.apiSignature", defaultValue = "false")
+    private boolean apiSignature;
+
+    /**
+     * Whether or not to compare the class files of the bundle and its baseline before
+     * baselining. If the exported packages and their versions match and all class files
+     * are byte-identical, there cannot be any API changes and the comparison of the
+     * bundles' APIs is skipped.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.checkIdenticalClasses", defaultValue = "true")
+    private boolean checkIdenticalClasses;
+
+    /**
+     * Whether or not to only diff the exported packages that changed since the last run.
+     * The results of the last run are kept in {@code target/baselining-state.properties}
+     * and reused for packages whose class files, export version and used packages did not
+     * change. Ignored if {@code explain} is enabled.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.incremental", defaultValue = "false")
+    private boolean incremental;
+
+    /**
+     * Whether or not to retrieve the available versions of all reactor modules using this
+     * plugin concurrently in one batch when the first module is baselined. Subsequent
+     * modules then find their baseline version without waiting for remote repositories.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.prefetchMetadata", defaultValue = "true")
+    private boolean prefetchMetadata;
+
+    /**
+     * How long the versions available for an artifact are cached in the {@code cacheDirectory},
+     * e.g. {@code 30m}, {@code 1h} or {@code 1d}. Within this time no remote repositories are
+     * queried to find the baseline version. Releases installed into the local repository
+     * invalidate the cached versions. The default of {@code 0} disables the cache. The
+     * versions are shared by all modules of a build, hence the time-to-live and
+     * {@code cacheDirectory} of the first module looking up versions apply to all of them.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.metadataTtl", defaultValue = "0")
+    private String metadataTtl;
+
+    /**
+     * Several baselines to check the API against in one run, e.g. {@code latest,previousMinor}.
+     * Each entry is either the name of a {@code strategy} or an explicit version. The bundle's
+     * API is computed once and diffed against all baselines concurrently. For each package,
+     * the result requiring the highest version is reported. If set, {@code strategy} and
+     * {@code baselineVersion} are ignored, as is {@code incremental} unless only one baseline
+     * needs to be diffed.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.baselines")
+    private List<String> baselines;
+
+    /**
+     * The {@code strategy} to select the baseline version among the released versions
+     * preceding the project's version. Valid values are:
+     * <li>
+     * latest (default): The latest released version.
+     * <li>
+     * sameMajor: The latest released version with the same major version.
+     * <li>
+     * sameMinor: The latest released version with the same major and minor version.
+     * <li>
+     * previousMinor: The latest released version of a preceding minor version with the same major version.
+     * <li>
+     * previousMajor: The latest released version of a preceding major version.
+     *
+     * Ignored if a {@code baselineVersion} is configured.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.strategy", defaultValue = "latest")
+    private BaselineVersionSelector.Strategy strategy;
+
+    /**
+     * An explicit version to baseline against. If set, the available versions are not
+     * retrieved from the repositories.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.version")
+    private String baselineVersion;
+
+    /**
+     * Patterns of the exported packages to baseline, e.g. {@code com.example.api.*}. Patterns
+     * use bnd's syntax, where {@code *} matches any characters and a trailing {@code .*} also
+     * matches the package itself. By default all exported packages are baselined. Only the
+     * classes of the selected packages of the bundle are analyzed.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.includePackages")
+    private List<String> includePackages;
+
+    /**
+     * Patterns of the exported packages not to baseline, e.g. {@code *.internal.*}. Takes
+     * precedence over {@code includePackages}.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.excludePackages")
+    private List<String> excludePackages;
+
+    /**
+     * The maximum number of threads diffing the packages of a bundle against its baseline.
+     * The packages are partitioned and the partitions are diffed concurrently, which speeds
+     * up baselining bundles exporting many packages. Defaults to the number of available
+     * processors, divided by the number of modules baselined concurrently by the
+     * {@code baseline-aggregate} goal, if set to a value less than 1, {@code 1} diffs all
+     * packages on one thread.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.diffThreads", defaultValue = "0")
+    private int diffThreads;
+
+    /**
+     * Whether or not to baseline one package at a time, releasing the package's API trees
+     * before moving on to the next package. Peak memory usage is then bounded by the
+     * largest package rather than the whole bundle, at the expense of time, which helps
+     * baselining very large bundles in small heaps. Baselines are always read from the
+     * bundles rather than their API signatures, API trees are not cached, and no baselining
+     * server is used, as it keeps whole API trees in memory.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.lowMemory", defaultValue = "false")
+    private boolean lowMemory;
+
+    /**
+     * Whether and in which format to write the timings of the phases of baselining and the
+     * number of processed packages, classes and bytes to {@code target/baselining-metrics.*}.
+     * Valid values are {@code none} (default), {@code prometheus} (text exposition format) and
+     * {@code csv}. A summary of the metrics is always logged.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.metricsFormat", defaultValue = "none")
+    private BaselineMetrics.Format metricsFormat;
+
+    @Parameter(defaultValue = "${localRepository}", readonly = true)
+    private ArtifactRepository localRepository;
+
+    /**
+     * Baselines the given project's artifact against the latest released version preceding it.
+     * Messages are written to the given {@code log}.
+     *
+     * @return the failure report, an empty string if the build should not fail
+     */
+    protected String baselineProject(final Log log, final MavenProject project) throws Exception {
+        return baselineProject(log, project, project.getArtifact().getFile());
+    }
+
+    /**
+     * Baselines the given bundle, built by the given project, against the latest released
+     * version preceding it. Messages are written to the given {@code log}.
+     *
+     * @return the failure report, an empty string if the build should not fail
+     */
+    protected String baselineProject(final Log log, final MavenProject project, final File bundle) throws Exception {
+        final BaselineMetrics metrics = new BaselineMetrics();
+        try {
+            return baselineProject(log, project, bundle, metrics);
+        } finally {
+            metrics.stop();
+            log.info(metrics.getSummary());
+            writeMetrics(log, project, metrics);
+        }
+    }
+
+    private String baselineProject(final Log log, final MavenProject project, final File bundle,
+                                   final BaselineMetrics metrics) throws Exception {
+        final Artifact artifact = project.getArtifact();
+        final List<ArtifactRepository> remoteRepositories = project.getRemoteArtifactRepositories();
+        long start = System.nanoTime();
+        final List<ArtifactVersion> baselineVersions = computeBaselineVersions(log, artifact, remoteRepositories);
+        metrics.record(Phase.metadata, start);
+        if (baselineVersions.isEmpty()) {
+            log.info(MSG_NO_BASELINE);
+            writeReport(log, project, null, BaselineReport.STATUS_NO_BASELINE, null, "");
+            return "";
+        }
+
+        final String baselineVersion = join(baselineVersions);
+        final List<Artifact> baselineArtifacts = new ArrayList<Artifact>();
+        start = System.nanoTime();
+        for (final ArtifactVersion version : baselineVersions) {
+            log.info(String.format(MSG_BASELINING, version));
+            baselineArtifacts.add(getBaselineArtifact(log, artifact, version, remoteRepositories));
+        }
+        metrics.record(Phase.resolve, start);
+        final BundleArchive archive = BundleArchive.open(bundle, log);
+        try {
+            metrics.setClasses(countClasses(archive));
+            start = System.nanoTime();
+            final PackageDigests digests = checkIdenticalClasses || incremental
+                    ? PackageDigests.compute(archive)
+                    : null;
+            if (checkIdenticalClasses) {
+                for (final Iterator<Artifact> it = baselineArtifacts.iterator(); it.hasNext(); ) {
+                    final Artifact baselineArtifact = it.next();
+                    if (digests.hasSameApi(computeDigests(log, baselineArtifact, metrics))) {
+                        log.debug("All class files and package exports are identical to " + baselineArtifact);
+                        it.remove();
+                    }
+                }
+            }
+            metrics.record(Phase.digest, start);
+            if (baselineArtifacts.isEmpty()) {
+                log.info(MSG_NO_API_CHANGES);
+                writeReport(log, project, baselineVersion, BaselineReport.STATUS_IDENTICAL, null, "");
+                return "";
+            }
+
+            final PackageFilter packageFilter = new PackageFilter(includePackages, excludePackages);
+            final Set<String> packages = packageFilter.isEmpty()
+                    ? null
+                    : selectPackages(log, packageFilter, archive, baselineArtifacts, metrics);
+            if (packages != null && packages.isEmpty()) {
+                log.info(MSG_NO_PACKAGES);
+                writeReport(log, project, baselineVersion, BaselineReport.STATUS_NO_PACKAGES, null, "");
+                return "";
+            }
+
+            final BaselineResult result;
+            if (incremental && !explain && baselineArtifacts.size() == 1) {
+                final File stateFile = new File(project.getBuild().getDirectory(), IncrementalState.FILE_NAME);
+                result = baselineIncrementally(log, archive, digests, baselineArtifacts.get(0), packages, stateFile, metrics);
+            } else {
+                result = diff(log, archive, baselineArtifacts, packages, metrics);
+            }
+            metrics.setPackages(result.getPackages().size());
+            start = System.nanoTime();
+            final String failureReport = reportFindings(log, result);
+            writeReport(log, project, baselineVersion, BaselineReport.STATUS_BASELINED, result, failureReport);
+            projectBaselined(project, result);
+            metrics.record(Phase.report, start);
+            return failureReport;
+        } finally {
+            metrics.addBytesRead(archive.getBytesRead());
+            archive.close();
+        }
+    }
+
+    /**
+     * Invoked with the result of each project whose packages were diffed against its
+     * baselines, possibly concurrently for several projects. Does nothing by default.
+     */
+    protected void projectBaselined(final MavenProject project, final BaselineResult result) {
+    }
+
+    /**
+     * @return the number of projects baselined concurrently, which share the available
+     * processors for diffing their packages
+     */
+    protected int getConcurrentProjects() {
+        return 1;
+    }
+
+    private static String join(final List<ArtifactVersion> versions) {
+        final StringBuilder joined = new StringBuilder();
+        for (final ArtifactVersion version : versions) {
+            if (joined.length() > 0) {
+                joined.append(", ");
+            }
+            joined.append(version);
+        }
+        return joined.toString();
+    }
+
+    private static int countClasses(final BundleArchive archive) {
+        int classes = 0;
+        for (final String name : archive.getEntryNames()) {
+            if (name.endsWith(".class")) {
+                classes++;
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Selects the packages to baseline among the packages exported by the bundle or any of
+     * its baselines. Packages only exported by a baseline are reported as removed.
+     */
+    private static Set<String> selectPackages(final Log log, final PackageFilter packageFilter,
+                                              final BundleArchive archive, final List<Artifact> baselineArtifacts,
+                                              final BaselineMetrics metrics) throws IOException {
+        final Set<String> exported = new HashSet<String>(archive.getExportedPackages());
+        for (final Artifact baselineArtifact : baselineArtifacts) {
+            exported.addAll(getExportedPackages(log, baselineArtifact, metrics));
+        }
+        return packageFilter.select(exported);
+    }
+
+    private static Set<String> getExportedPackages(final Log log, final Artifact artifact, final BaselineMetrics metrics)
+            throws IOException {
+        if (ApiSignature.isApiSignature(artifact)) {
+            return ApiSignature.readDigests(artifact.getFile()).getExports().keySet();
+        }
+        final BundleArchive archive = BundleArchive.open(artifact.getFile(), log);
+        try {
+            return archive.getExportedPackages();
+        } finally {
+            metrics.addBytesRead(archive.getBytesRead());
+            archive.close();
+        }
+    }
+
+    private static PackageDigests computeDigests(final Log log, final Artifact artifact, final BaselineMetrics metrics)
+            throws IOException {
+        if (ApiSignature.isApiSignature(artifact)) {
+            metrics.addBytesRead(artifact.getFile().length());
+            return ApiSignature.readDigests(artifact.getFile());
+        }
+        final BundleArchive archive = BundleArchive.open(artifact.getFile(), log);
+        try {
+            return PackageDigests.compute(archive);
+        } finally {
+            metrics.addBytesRead(archive.getBytesRead());
+            archive.close();
+        }
+    }
+
+    private void writeMetrics(final Log log, final MavenProject project, final BaselineMetrics metrics) {
+        if (metricsFormat == BaselineMetrics.Format.none) {
+            return;
+        }
+        final File metricsFile = new File(project.getBuild().getDirectory(), BaselineMetrics.getFileName(metricsFormat));
+        try {
+            metrics.write(metricsFile, metricsFormat, project.getArtifact());
+            log.debug("Wrote baselining metrics " + metricsFile);
+        } catch (IOException e) {
+            log.warn("Failed to write baselining metrics " + metricsFile + ": " + e.getMessage());
+        }
+    }
+
+    private void writeReport(final Log log, final MavenProject project, final String baselineVersion,
+                             final String status, final BaselineResult result, final String failureReport) {
+        if (!report) {
+            return;
+        }
+        final File reportFile = new File(project.getBuild().getDirectory(), BaselineReport.FILE_NAME);
+        try {
+            BaselineReport.write(reportFile, project.getArtifact(), baselineVersion, status, result, failureReport);
+            log.debug("Wrote baselining report " + reportFile);
+        } catch (IOException e) {
+            log.warn("Failed to write baselining report " + reportFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param packages the packages to baseline, or {@code null} for all packages
+     */
+    private BaselineResult baselineIncrementally(final Log log, final BundleArchive newer, final PackageDigests digests,
+                                                 final Artifact baselineArtifact, final Set<String> packages,
+                                                 final File stateFile, final BaselineMetrics metrics) throws Exception {
+        final String baselineKey = IncrementalState.getBaselineKey(baselineArtifact);
+        final IncrementalState previousState = IncrementalState.load(stateFile, log);
+        final Set<String> dirty = previousState == null ? null : previousState.getDirtyPackages(baselineKey, digests);
+
+        final BaselineResult result;
+        if (dirty == null) {
+            result = diff(log, newer, Collections.singletonList(baselineArtifact), packages, metrics);
+        } else {
+            if (packages != null) {
+                dirty.retainAll(packages);
+            }
+            log.debug("Packages changed since the last run: " + dirty);
+            final BaselineResult partial = dirty.isEmpty()
+                    ? null
+                    : diff(log, newer, Collections.singletonList(baselineArtifact), dirty, metrics);
+            final BaselineResult merged = previousState.merge(dirty, partial, digests.getBundleVersion());
+            // the last run may have baselined packages that are no longer selected
+            result = packages == null ? merged : merged.select(packages);
+        }
+
+        try {
+            new IncrementalState(baselineKey, digests, result).store(stateFile);
+        } catch (IOException e) {
+            log.warn("Failed to store baselining state in " + stateFile + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Logs the findings of baselining.
+     *
+     * @return the failure report, an empty string if the build should not fail
+     */
+    protected String reportFindings(Log log, BaselineResult result) {
+
+        final List<PackageResult> changedPackages = new ArrayList<PackageResult>();
+        for (final PackageResult packageResult : result.getPackages()) {
+            if (packageResult.getDelta() != Delta.UNCHANGED) {
+                changedPackages.add(packageResult);
+            }
+        }
+        if (changedPackages.size() == 0) {
+            log.info(MSG_NO_API_CHANGES);
+            return "";
+        }
+
+        final Enforcement enforcement = getEnforcement();
+        final StringBuilder failureReport = new StringBuilder();
+        final ExplanationWriter explanation = explain ? new ExplanationWriter(log, explainLimit) : null;
+        for (final PackageResult info : changedPackages) {
+            final int comparison = info.getNewerVersion().compareTo(info.getSuggestedVersion());
+            if (comparison < 0) { // lower bound violation: newerVersion is less than suggestedVersion
+                final String msg = String.format(MSG_RAISE_VERSION, info.getPackageName(), info.getSuggestedVersion(), info.getOlderVersion(), info.getNewerVersion());
+                switch (enforcement) {
+                    case lowerAndUpperBound:
+                    case lowerBound:
+                        failureReport.append(msg).append("\n");
+                        log.error(msg);
+                        break;
+                    case none:
+                        log.warn(msg);
+                }
+            } else if (comparison > 0) { // upper bound violation: newerVersion is greater than suggestedVersion
+                final String msg = String.format(MSG_LOWER_VERSION, info.getPackageName(), info.getSuggestedVersion(), info.getOlderVersion(), info.getNewerVersion());
+                switch (enforcement) {
+                    case lowerAndUpperBound:
+                        failureReport.append(msg).append("\n");
+                        log.error(msg);
+                        break;
+                    case lowerBound:
+                    case none:
+                        log.warn(msg);
+                }
+            }
+
+            if (comparison != 0 && explanation != null && info.getDiff() != null) {
+                explanation.explain(info.getDiff());
+            }
+        }
+        if (explanation != null) {
+            explanation.finish();
+        }
+
+        if (enforceBundleVersion) {
+            Version suggestedBundleVersion = result.getSuggestedVersion();
+            Version newerBundleVersion = result.getNewerVersion();
+            final int comparison = newerBundleVersion.compareTo(suggestedBundleVersion);
+
+            if (comparison < 0) { // lower bound violation: newerVersion is less than suggestedVersion
+                final String msg = String.format(MSG_RAISE_BUNDLE_VERSION, suggestedBundleVersion, result.getOlderVersion(), newerBundleVersion);
+                switch (enforcement) {
+                    case lowerAndUpperBound:
+                    case lowerBound:
+                        failureReport.append(msg).append("\n");
+                        log.error(msg);
+                        break;
+                    case none:
+                        log.warn(msg);
+                }
+            }
+        }
+        return failureReport.toString();
+    }
+
+    private Enforcement getEnforcement() {
+        // backwards compatibility for failOnError
+        if (enforcement == Enforcement.lowerAndUpperBound && !failOnError) {
+            return Enforcement.none;
+        }
+        return enforcement;
+    }
+
+    /**
+     * Starts computing the baseline versions of the given project and resolving the baseline
+     * artifacts in the background. The baselining goals later pick up the resolved artifacts
+     * from the session's {@link BaselineArtifactStore}.
+     */
+    protected void prefetchBaselineArtifacts(final Log log, final MavenProject project) {
+        final Artifact artifact = project.getArtifact();
+        final List<ArtifactRepository> remoteRepositories = project.getRemoteArtifactRepositories();
+        BaselineArtifactStore.forSession(session).prefetch(new Runnable() {
+            public void run() {
+                try {
+                    final long start = System.nanoTime();
+                    for (final ArtifactVersion version : computeBaselineVersions(log, artifact, remoteRepositories)) {
+                        final Artifact baselineArtifact = getBaselineArtifact(log, artifact, version, remoteRepositories);
+                        log.debug("Prefetched baseline " + baselineArtifact + " in "
+                                + (System.nanoTime() - start) / 1000000L + " ms");
+                    }
+                } catch (Exception e) {
+                    // the baselining goals retry and report the failure
+                    log.debug("Failed to prefetch the baseline of " + artifact, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Resolves the baseline artifacts of the given project, waiting for them if they are
+     * being prefetched.
+     *
+     * @return the baseline artifacts, empty if no baseline version was found
+     */
+    protected List<Artifact> resolveBaselineArtifacts(final Log log, final MavenProject project) throws Exception {
+        final Artifact artifact = project.getArtifact();
+        final List<ArtifactRepository> remoteRepositories = project.getRemoteArtifactRepositories();
+        final List<Artifact> baselineArtifacts = new ArrayList<Artifact>();
+        for (final ArtifactVersion version : computeBaselineVersions(log, artifact, remoteRepositories)) {
+            log.info(String.format(MSG_BASELINING, version));
+            baselineArtifacts.add(getBaselineArtifact(log, artifact, version, remoteRepositories));
+        }
+        return baselineArtifacts;
+    }
+
+    /**
+     * Parses the API trees of the given baseline artifacts once and returns a watcher
+     * keeping them in memory, to repeatedly baseline a changing bundle.
+     */
+    BaselineWatcher createWatcher(final Log log, final List<Artifact> baselineArtifacts) throws Exception {
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        final BaselineMetrics metrics = new BaselineMetrics();
+        final List<ApiTree> baselineTrees = new ArrayList<ApiTree>();
+        for (final Artifact baselineArtifact : baselineArtifacts) {
+            baselineTrees.add(getApiTree(log, differ, baselineArtifact, metrics));
+        }
+        return new BaselineWatcher(differ, baselineTrees, new PackageFilter(includePackages, excludePackages),
+                getDiffThreads());
+    }
+
+    /**
+     * Returns the resolved baseline artifact, waiting for it if it is being prefetched.
+     */
+    private Artifact getBaselineArtifact(final Log log, final Artifact artifact, final ArtifactVersion baselineVersion,
+                                         final List<ArtifactRepository> remoteRepositories) throws Exception {
+        final String key = artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + baselineVersion
+                + (useApiSignature() ? ":" + ApiSignature.CLASSIFIER : "");
+        return BaselineArtifactStore.forSession(session).getArtifact(key, new Callable<Artifact>() {
+            public Artifact call() throws Exception {
+                return resolveBaselineArtifact(log, artifact, baselineVersion, remoteRepositories);
+            }
+        });
+    }
+
+    /**
+     * Resolves the baseline's API signature, if enabled and available, or otherwise the
+     * baseline bundle.
+     */
+    private Artifact resolveBaselineArtifact(Log log, Artifact artifact, ArtifactVersion baselineVersion,
+                                             List<ArtifactRepository> remoteRepositories)
+            throws ArtifactNotFoundException, ArtifactResolutionException {
+        if (useApiSignature()) {
+            final Artifact signatureArtifact = repositorySystem.createArtifactWithClassifier(
+                    artifact.getGroupId(),
+                    artifact.getArtifactId(),
+                    baselineVersion.toString(),
+                    ApiSignature.TYPE,
+                    ApiSignature.CLASSIFIER
+            );
+            resolveArtifact(signatureArtifact, remoteRepositories);
+            if (signatureArtifact.getFile() != null && signatureArtifact.getFile().isFile()) {
+                if (ApiSignature.isReadable(signatureArtifact.getFile())) {
+                    log.debug("Baselining against API signature " + signatureArtifact.getFile());
+                    return signatureArtifact;
+                }
+                log.debug("API signature " + signatureArtifact.getFile()
+                        + " was written with another bnd version or format, baselining against the bundle");
+            } else {
+                log.debug("No API signature available for " + signatureArtifact + ", baselining against the bundle");
+            }
+        }
+        final Artifact baselineArtifact = repositorySystem.createArtifact(
+                artifact.getGroupId(),
+                artifact.getArtifactId(),
+                baselineVersion.toString(),
+                "compile",
+                "jar"
+        );
+        resolveArtifact(baselineArtifact, remoteRepositories);
+        return baselineArtifact;
+    }
+
+    private boolean useApiSignature() {
+        // a signature's API tree can only be read as a whole
+        return apiSignature && !lowMemory;
+    }
+
+    private void resolveArtifact(Artifact baselineArtifact, List<ArtifactRepository> remoteRepositories) {
+        final ArtifactResolutionRequest request = new ArtifactResolutionRequest();
+        request.setArtifact(baselineArtifact);
+        request.setLocalRepository(localRepository);
+        request.setRemoteRepositories(remoteRepositories);
+        request.setOffline(session.isOffline());
+        repositorySystem.resolve(request);
+    }
+
+    /**
+     * Computes the versions to baseline against: one per configured {@code baselines} entry,
+     * without duplicates, or the one selected by {@code baselineVersion} or {@code strategy}.
+     */
+    private List<ArtifactVersion> computeBaselineVersions(final Log log, final Artifact artifact,
+                                                          final List<ArtifactRepository> remoteRepositories)
+            throws ArtifactMetadataRetrievalException, OverConstrainedVersionException {
+        if (baselines == null || baselines.isEmpty()) {
+            final ArtifactVersion version = computeBaselineVersion(artifact, remoteRepositories);
+            return version == null ? Collections.<ArtifactVersion>emptyList() : Collections.singletonList(version);
+        }
+        final Set<ArtifactVersion> versions = new LinkedHashSet<ArtifactVersion>();
+        List<ArtifactVersion> availableVersions = null;
+        for (final String baseline : baselines) {
+            final BaselineVersionSelector.Strategy baselineStrategy = BaselineVersionSelector.Strategy.forName(baseline);
+            if (baselineStrategy == null) {
+                versions.add(new DefaultArtifactVersion(baseline));
+                continue;
+            }
+            if (availableVersions == null) {
+                availableVersions = getAvailableVersions(artifact, remoteRepositories);
+            }
+            final ArtifactVersion version = selectBaselineVersion(artifact.getSelectedVersion(), availableVersions, baselineStrategy);
+            if (version == null) {
+                log.debug("No baseline version found for \"" + baseline + "\"");
+            } else {
+                versions.add(version);
+            }
+        }
+        return new ArrayList<ArtifactVersion>(versions);
+    }
+
+    private boolean needsAvailableVersions() {
+        if (baselines == null || baselines.isEmpty()) {
+            return baselineVersion == null;
+        }
+        for (final String baseline : baselines) {
+            if (BaselineVersionSelector.Strategy.forName(baseline) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ArtifactVersion computeBaselineVersion(Artifact artifact, List<ArtifactRepository> remoteRepositories)
+            throws ArtifactMetadataRetrievalException, OverConstrainedVersionException {
+        if (baselineVersion != null) {
+            return new DefaultArtifactVersion(baselineVersion);
+        }
+        final ArtifactVersion currentVersion = artifact.getSelectedVersion();
+        final List<ArtifactVersion> availableVersions = getAvailableVersions(artifact, remoteRepositories);
+        return selectBaselineVersion(currentVersion, availableVersions, strategy);
+    }
+
+    /**
+     * Diffs the API of the bundle against its baselines, delegating to the baselining server
+     * if one is configured and running.
+     *
+     * @param packages the packages to diff, or {@code null} to diff all packages
+     */
+    private BaselineResult diff(final Log log, final BundleArchive newer, final List<Artifact> baselineArtifacts,
+                                final Set<String> packages, final BaselineMetrics metrics) throws Exception {
+        // the server's results have no diffs to explain, and it does not diff package by package
+        if (serverPort > 0 && !explain && !lowMemory) {
+            final BaselineResult result = diffUsingServer(log, newer, baselineArtifacts, packages, metrics);
+            if (result != null) {
+                return result;
+            }
+        }
+        if (lowMemory) {
+            return baselineByPackage(log, newer, baselineArtifacts, packages, metrics);
+        }
+        if (baselineArtifacts.size() > 1) {
+            return baselineAll(log, newer, baselineArtifacts, packages, metrics);
+        }
+        return baseline(log, newer, baselineArtifacts.get(0), packages, metrics);
+    }
+
+    /**
+     * @return the result computed by the baselining server, or {@code null} if it is not available
+     */
+    private BaselineResult diffUsingServer(final Log log, final BundleArchive newer, final List<Artifact> baselineArtifacts,
+                                           final Set<String> packages, final BaselineMetrics metrics) {
+        final List<File> baselineFiles = new ArrayList<File>();
+        for (final Artifact baselineArtifact : baselineArtifacts) {
+            baselineFiles.add(baselineArtifact.getFile());
+        }
+        final long start = System.nanoTime();
+        try {
+            final BaselineResult result = BaselineServer.baseline(BaselineServer.DEFAULT_TOKEN_DIRECTORY, serverPort,
+                    newer.getFile(), baselineFiles, packages);
+            metrics.record(Phase.diff, start);
+            log.debug("Baselined using the baselining server on port " + serverPort);
+            return result;
+        } catch (ConnectException e) {
+            log.debug("No baselining server listening on port " + serverPort + ", baselining in-process");
+        } catch (SocketTimeoutException e) {
+            log.debug("No baselining server responding on port " + serverPort + ", baselining in-process");
+        } catch (IOException e) {
+            log.warn("Baselining server on port " + serverPort + " failed, baselining in-process: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Diffs the APIs of the bundle and its baseline, partitioning the packages across up to
+     * {@code diffThreads} threads.
+     *
+     * @param packages the packages to diff, or {@code null} to diff all packages
+     */
+    private BaselineResult baseline(final Log log, final BundleArchive newer, final Artifact baselineArtifact,
+                                    final Set<String> packages, final BaselineMetrics metrics) throws Exception {
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        long start = System.nanoTime();
+        final ApiTree n = ApiTree.create(differ, newer, packages);
+        final ApiTree o = getApiTree(log, differ, baselineArtifact, metrics);
+        metrics.record(Phase.parse, start);
+        start = System.nanoTime();
+        final BaselineResult result = ParallelBaseline.baseline(differ, n, o, packages, getDiffThreads());
+        metrics.record(Phase.diff, start);
+        return result;
+    }
+
+    private int getDiffThreads() {
+        if (diffThreads > 0) {
+            return diffThreads;
+        }
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, getConcurrentProjects()));
+    }
+
+    /**
+     * Diffs the API of the bundle against each of the baselines one package at a time, see
+     * {@link PackageByPackageBaseline}.
+     *
+     * @param packages the packages to diff, or {@code null} to diff all packages
+     * @return the combined result, see {@link BaselineResult#combine(List)}
+     */
+    private BaselineResult baselineByPackage(final Log log, final BundleArchive newer,
+                                             final List<Artifact> baselineArtifacts, final Set<String> packages,
+                                             final BaselineMetrics metrics) throws Exception {
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        final List<BaselineResult> results = new ArrayList<BaselineResult>();
+        for (final Artifact baselineArtifact : baselineArtifacts) {
+            final BundleArchive older = BundleArchive.open(baselineArtifact.getFile(), log);
+            try {
+                results.add(PackageByPackageBaseline.baseline(differ, newer, older, packages, explain, metrics));
+            } finally {
+                metrics.addBytesRead(older.getBytesRead());
+                older.close();
+            }
+        }
+        return BaselineResult.combine(results);
+    }
+
+    /**
+     * Diffs the API of the bundle against each of the baselines concurrently, computing the
+     * bundle's API only once.
+     *
+     * @param packages the packages to diff, or {@code null} to diff all packages
+     * @return the combined result, see {@link BaselineResult#combine(List)}
+     */
+    private BaselineResult baselineAll(final Log log, final BundleArchive newer, final List<Artifact> baselineArtifacts,
+                                       final Set<String> packages, final BaselineMetrics metrics) throws Exception {
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        final long start = System.nanoTime();
+        final ApiTree n = ApiTree.create(differ, newer, packages);
+        metrics.record(Phase.parse, start);
+        final Instructions packageFilters = packages == null ? new Instructions() : new Instructions(packages);
+
+        final int poolSize = Math.min(baselineArtifacts.size(), getDiffThreads());
+        final ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        try {
+            final List<Future<BaselineResult>> futures = new ArrayList<Future<BaselineResult>>();
+            for (final Artifact baselineArtifact : baselineArtifacts) {
+                futures.add(executor.submit(new Callable<BaselineResult>() {
+                    public BaselineResult call() throws Exception {
+                        long start = System.nanoTime();
+                        final ApiTree o = getApiTree(log, differ, baselineArtifact, metrics);
+                        metrics.record(Phase.parse, start);
+                        start = System.nanoTime();
+                        final Baseline baseline = new Baseline(new ReporterAdapter(), differ);
+                        baseline.baseline(n.getTree(), n.getExports(), o.getTree(), o.getExports(), packageFilters);
+                        metrics.record(Phase.diff, start);
+                        return BaselineResult.from(baseline);
+                    }
+                }));
+            }
+            final List<BaselineResult> results = new ArrayList<BaselineResult>();
+            for (final Future<BaselineResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : e;
+                }
+            }
+            return BaselineResult.combine(results);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the API tree of a baseline artifact.
+     */
+    private ApiTree getApiTree(final Log log, final Differ differ, final Artifact baselineArtifact,
+                               final BaselineMetrics metrics) throws Exception {
+        final Callable<ApiTree> loader = new Callable<ApiTree>() {
+            public ApiTree call() throws Exception {
+                if (ApiSignature.isApiSignature(baselineArtifact)) {
+                    metrics.addBytesRead(baselineArtifact.getFile().length());
+                    return ApiSignature.readApiTree(baselineArtifact.getFile(), differ);
+                }
+                if (cache) {
+                    return new BaselineTreeCache(cacheDirectory, log).getApiTree(baselineArtifact, differ, metrics);
+                }
+                return BaselineTreeCache.createApiTree(baselineArtifact.getFile(), differ, metrics, log);
+            }
+        };
+        if (sessionCacheSize > 0) {
+            return ApiTreeStore.forSession(session, sessionCacheSize, log).getApiTree(baselineArtifact.getFile(), loader, metrics);
+        }
+        return loader.call();
+    }
+
+    /**
+     * Starts retrieving the available versions of the given projects' artifacts concurrently,
+     * unless disabled via {@code prefetchMetadata}. This only has an effect the first time it
+     * is invoked in a build session.
+     */
+    protected void prefetchAvailableVersions(final Collection<MavenProject> projects) throws MojoExecutionException {
+        if (!prefetchMetadata || !needsAvailableVersions()) {
+            return;
+        }
+        final Map<Artifact, List<ArtifactRepository>> artifacts = new LinkedHashMap<Artifact, List<ArtifactRepository>>();
+        for (final MavenProject project : projects) {
+            artifacts.put(toNonSnapshotArtifact(project.getArtifact()), project.getRemoteArtifactRepositories());
+        }
+        try {
+            getVersionMetadataStore().prefetch(artifacts);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the projects of the reactor build that use this plugin and produce an artifact.
+     */
+    protected List<MavenProject> getReactorProjectsUsingPlugin() {
+        final String pluginKey = mojoExecution.getGroupId() + ":" + mojoExecution.getArtifactId();
+        final List<MavenProject> projects = new ArrayList<MavenProject>();
+        for (final MavenProject project : session.getProjects()) {
+            if ("pom".equals(project.getPackaging())) {
+                continue;
+            }
+            for (final Plugin plugin : project.getBuildPlugins()) {
+                if (pluginKey.equals(plugin.getKey())) {
+                    projects.add(project);
+                    break;
+                }
+            }
+        }
+        return projects;
+    }
+
+    private VersionMetadataStore getVersionMetadataStore() {
+        final long ttlMillis = VersionMetadataCache.parseTtl(metadataTtl);
+        final VersionMetadataCache cache = ttlMillis > 0
+                ? new VersionMetadataCache(cacheDirectory, new File(localRepository.getBasedir()), ttlMillis, getLog())
+                : null;
+        return VersionMetadataStore.forSession(session, artifactMetadataSource, localRepository, cache, getLog());
+    }
+
+    private List<ArtifactVersion> getAvailableVersions(final Artifact artifact, final List<ArtifactRepository> remoteRepositories)
+            throws ArtifactMetadataRetrievalException {
+        return getVersionMetadataStore().getAvailableVersions(toNonSnapshotArtifact(artifact), remoteRepositories);
+    }
+
+    private Artifact toNonSnapshotArtifact(final Artifact artifact) {
+        final Artifact nonSnapshotArtifact;
+        if (artifact.isSnapshot()) {
+            final String version = artifact.getBaseVersion();
+            final int snapshotIdx = version.indexOf("-SNAPSHOT");
+            final String nonSnapshotVersion = version.substring(0, snapshotIdx);
+            nonSnapshotArtifact = repositorySystem.createArtifact(
+                    artifact.getGroupId(),
+                    artifact.getArtifactId(),
+                    nonSnapshotVersion,
+                    "compile",
+                    "jar"
+            );
+        } else {
+            nonSnapshotArtifact = artifact;
+        }
+        return nonSnapshotArtifact;
+    }
+
+    /**
+     * @throws MojoExecutionException if the artifact cannot be read, rather than skipping it
+     */
+    protected boolean isBundle(final File artifactFile) throws MojoExecutionException {
+        if (artifactFile == null || !artifactFile.getName().endsWith(".jar") || !artifactFile.exists()) {
+            return false;
+        }
+        final Manifest manifest = loadManifest(artifactFile);
+        if (manifest == null) {
+            return false;
+        }
+        final String symbolicName = manifest.getMainAttributes().getValue(BUNDLE_SYMBOLIC_NAME);
+        return symbolicName != null;
+    }
+
+    private Manifest loadManifest(final File artifactFile) throws MojoExecutionException {
+        try {
+            final BundleArchive archive = BundleArchive.open(artifactFile, getLog());
+            try {
+                return archive.getManifest();
+            } finally {
+                archive.close();
+            }
+        } catch (IOException ioe) {
+            throw new MojoExecutionException("Error reading JAR manifest of " + artifactFile, ioe);
+        }
+    }
+
+    public static enum Enforcement {
+        lowerAndUpperBound,
+        lowerBound,
+        none
+    }
+}
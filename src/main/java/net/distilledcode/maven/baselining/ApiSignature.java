@@ -0,0 +1,159 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.service.diff.Differ;
+
+import org.apache.maven.artifact.Artifact;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The API signature of a bundle: a compact binary index of its exported API, attached to
+ * releases by the {@code api-signature} goal, that can be baselined against instead of the
+ * bundle itself.
+ *
+ * The index consists of the bundle's {@link PackageDigests}, allowing to detect identical
+ * bundles, followed by its {@link ApiTree} as written by {@link TreeSerializer}. The tree's
+ * structure depends on the bnd version that computed it, hence signatures written with
+ * another bnd version are not read (see {@link #isReadable(File)}).
+ */
+class ApiSignature {
+
+    static final String CLASSIFIER = "api-signature";
+
+    static final String TYPE = "tree";
+
+    private static final int MAGIC = 0x42415347; // "BASG"
+
+    private static final int FORMAT_VERSION = 2;
+
+    private ApiSignature() {
+    }
+
+    static boolean isApiSignature(final Artifact artifact) {
+        return CLASSIFIER.equals(artifact.getClassifier());
+    }
+
+    static boolean isApiSignature(final File file) {
+        return file.getName().endsWith("-" + CLASSIFIER + "." + TYPE);
+    }
+
+    /**
+     * @return whether the file is an API signature in the current format written with the
+     * same bnd version as the one baselining
+     */
+    static boolean isReadable(final File file) {
+        try {
+            open(file).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static void write(final File file, final PackageDigests digests, final ApiTree apiTree) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(TreeSerializer.BND_VERSION);
+        writeDigests(out, digests);
+        TreeSerializer.write(out, apiTree);
+        out.close();
+        CacheFiles.write(file, bytes.toByteArray());
+    }
+
+    static PackageDigests readDigests(final File file) throws IOException {
+        final DataInputStream in = open(file);
+        try {
+            return readDigests(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    static ApiTree readApiTree(final File file, final Differ differ) throws Exception {
+        final DataInputStream in = open(file);
+        try {
+            readDigests(in);
+            return TreeSerializer.read(in, differ);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static DataInputStream open(final File file) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an API signature: " + file);
+            }
+            final int formatVersion = in.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported API signature format version " + formatVersion + ": " + file);
+            }
+            final String bndVersion = in.readUTF();
+            if (!TreeSerializer.BND_VERSION.equals(bndVersion)) {
+                throw new IOException("API signature written with bnd " + bndVersion + " rather than "
+                        + TreeSerializer.BND_VERSION + ": " + file);
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static void writeDigests(final DataOutput out, final PackageDigests digests) throws IOException {
+        writeNullableString(out, digests.getExportPackage());
+        writeNullableString(out, digests.getBundleVersionHeader());
+        final Map<String, String> sortedDigests = new TreeMap<String, String>(digests.getDigests());
+        out.writeInt(sortedDigests.size());
+        for (final Map.Entry<String, String> digest : sortedDigests.entrySet()) {
+            out.writeUTF(digest.getKey());
+            out.writeUTF(digest.getValue());
+        }
+    }
+
+    private static PackageDigests readDigests(final DataInput in) throws IOException {
+        final String exportPackage = readNullableString(in);
+        final String bundleVersion = readNullableString(in);
+        final int size = in.readInt();
+        final Map<String, String> digests = new HashMap<String, String>();
+        for (int i = 0; i < size; i++) {
+            digests.put(in.readUTF(), in.readUTF());
+        }
+        return new PackageDigests(digests, exportPackage, bundleVersion);
+    }
+
+    // manifest headers may exceed the 64k limit of writeUTF()
+    private static void writeNullableString(final DataOutput out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readNullableString(final DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
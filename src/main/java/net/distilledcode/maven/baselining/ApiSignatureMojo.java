@@ -0,0 +1,80 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.DiffPluginImpl;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+
+import java.io.File;
+import java.util.jar.Manifest;
+
+/**
+ * Writes the API signature of the bundle, a compact binary index of its exported API, and
+ * attaches it to the project with the classifier {@code api-signature}. When the bundle is
+ * released, baselining later versions resolves and diffs the signature instead of
+ * downloading and parsing the whole bundle.
+ *
+ * @since 1.1.2
+ */
+@Mojo(
+        name = "api-signature",
+        defaultPhase = LifecyclePhase.PACKAGE,
+        requiresProject = true,
+        threadSafe = true
+)
+public class ApiSignatureMojo extends AbstractMojo {
+
+    @Component
+    private MavenProject project;
+
+    @Component
+    private MavenProjectHelper projectHelper;
+
+    /*
+     * If set to true the plugin execution will be skipped.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.apiSignature.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().debug("Execution skipped via property \"baselining.apiSignature.skip\"");
+            return;
+        }
+        final File artifactFile = project.getArtifact().getFile();
+        if (artifactFile == null || !artifactFile.getName().endsWith(".jar") || !artifactFile.isFile()) {
+            getLog().debug("Execution skipped, artifact is not a bundle.");
+            return;
+        }
+
+        final File signatureFile = new File(project.getBuild().getDirectory(),
+                project.getBuild().getFinalName() + "-" + ApiSignature.CLASSIFIER + "." + ApiSignature.TYPE);
+        try {
+            final BundleArchive archive = BundleArchive.open(artifactFile, getLog());
+            try {
+                final Manifest manifest = archive.getManifest();
+                if (manifest == null || manifest.getMainAttributes().getValue(AbstractBaselineMojo.BUNDLE_SYMBOLIC_NAME) == null) {
+                    getLog().debug("Execution skipped, artifact is not a bundle.");
+                    return;
+                }
+                ApiSignature.write(signatureFile, PackageDigests.compute(archive),
+                        ApiTree.create(new DiffPluginImpl(), archive, null));
+            } finally {
+                archive.close();
+            }
+        } catch (Exception e) {
+            throw new MojoExecutionException("Failed to write API signature " + signatureFile, e);
+        }
+        getLog().info("Wrote API signature " + signatureFile.getName() + " (" + signatureFile.length() + " bytes)");
+        projectHelper.attachArtifact(project, ApiSignature.TYPE, ApiSignature.CLASSIFIER, signatureFile);
+    }
+}
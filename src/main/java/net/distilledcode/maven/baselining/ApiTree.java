@@ -0,0 +1,82 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.header.OSGiHeader;
+import aQute.bnd.header.Parameters;
+import aQute.bnd.osgi.Analyzer;
+import aQute.bnd.osgi.Constants;
+import aQute.bnd.osgi.Jar;
+import aQute.bnd.service.diff.Differ;
+import aQute.bnd.service.diff.Tree;
+
+import java.util.Set;
+import java.util.jar.Manifest;
+
+/**
+ * The API of a bundle as needed by bnd's {@link aQute.bnd.differ.Baseline}: the diff
+ * {@link Tree} and the bundle's {@code Export-Package} header.
+ */
+public class ApiTree {
+
+    private final Tree tree;
+
+    private final String exportPackage;
+
+    public ApiTree(final Tree tree, final String exportPackage) {
+        this.tree = tree;
+        this.exportPackage = exportPackage;
+    }
+
+    /**
+     * Computes the API of the given JAR, which remains open and needs to be closed by the caller.
+     */
+    public static ApiTree create(final Differ differ, final Jar jar) throws Exception {
+        final Manifest manifest = jar.getManifest();
+        final String exportPackage = manifest == null
+                ? null
+                : manifest.getMainAttributes().getValue(Constants.EXPORT_PACKAGE);
+        return new ApiTree(differ.tree(jar), exportPackage);
+    }
+
+    /**
+     * Computes the API of the given bundle, only reading the classes of its exported packages
+     * and the classes they inherit members from.
+     *
+     * The {@link Jar}s created from the archive are closed before returning, the archive
+     * remains open.
+     *
+     * @param packages the exported packages to compute the API of, or {@code null} for all
+     */
+    public static ApiTree create(final Differ differ, final BundleArchive archive, final Set<String> packages) throws Exception {
+        final Analyzer analyzer = new Analyzer();
+        try {
+            final Jar jar = archive.createApiJar(packages);
+            analyzer.setJar(jar);
+            for (final Jar classpathJar : archive.createClasspath(jar)) {
+                analyzer.addClasspath(classpathJar);
+            }
+            return create(differ, analyzer);
+        } finally {
+            analyzer.close();
+        }
+    }
+
+    private static ApiTree create(final Differ differ, final Analyzer analyzer) throws Exception {
+        final Manifest manifest = analyzer.getJar().getManifest();
+        final String exportPackage = manifest == null
+                ? null
+                : manifest.getMainAttributes().getValue(Constants.EXPORT_PACKAGE);
+        return new ApiTree(differ.tree(analyzer), exportPackage);
+    }
+
+    public Tree getTree() {
+        return tree;
+    }
+
+    public String getExportPackage() {
+        return exportPackage;
+    }
+
+    public Parameters getExports() {
+        return exportPackage == null ? new Parameters() : OSGiHeader.parseHeader(exportPackage);
+    }
+}
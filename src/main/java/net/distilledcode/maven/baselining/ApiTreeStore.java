@@ -0,0 +1,130 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Session scoped, size-bounded store of the API trees of baseline bundles.
+ *
+ * Parsing a bundle into its API tree is the most expensive step of baselining. Within
+ * one build session, the same baseline may be used repeatedly, e.g. by several modules,
+ * several executions or by both the {@code baseline} and {@code baseline-aggregate} goals.
+ * The store keeps the most recently used trees, keyed by the bundle's path, size and
+ * modification time, and computes each tree at most once even if it is requested by
+ * concurrent mojo executions. The store is released together with the session.
+ *
+ * A tree does not depend on how the execution computing it reads its baseline, e.g. from
+ * the persistent {@link BaselineTreeCache} or not, hence all executions share the trees.
+ * Their maximum numbers of trees differ possibly, the largest one applies to all of them.
+ */
+class ApiTreeStore {
+
+    static final SessionScope<ApiTreeStore> STORES = new SessionScope<ApiTreeStore>();
+
+    private final Map<String, Future<ApiTree>> trees;
+
+    // guarded by trees
+    private int maximumSize;
+
+    private final Set<Integer> ignoredSizes = Collections.synchronizedSet(new HashSet<Integer>());
+
+    ApiTreeStore(final int maximumSize) {
+        this.maximumSize = maximumSize;
+        this.trees = new LinkedHashMap<String, Future<ApiTree>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Future<ApiTree>> eldest) {
+                return size() > ApiTreeStore.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the store of the given session, creating it if necessary. The store keeps the
+     * largest maximum number of trees requested by any of the session's mojo executions,
+     * executions requesting fewer trees are warned once per number.
+     */
+    static ApiTreeStore forSession(final MavenSession session, final int maximumSize, final Log log) {
+        final ApiTreeStore store = STORES.get(session, new SessionScope.Factory<ApiTreeStore>() {
+            public ApiTreeStore create() {
+                return new ApiTreeStore(maximumSize);
+            }
+        });
+        final int size = store.ensureMaximumSize(maximumSize);
+        if (size > maximumSize && store.ignoredSizes.add(maximumSize)) {
+            log.warn("Keeping up to " + size + " API trees in memory as configured by another module of this build,"
+                    + " ignoring sessionCacheSize " + maximumSize);
+        }
+        return store;
+    }
+
+    /**
+     * @return the maximum size applying to the store
+     */
+    private int ensureMaximumSize(final int size) {
+        synchronized (trees) {
+            maximumSize = Math.max(maximumSize, size);
+            return maximumSize;
+        }
+    }
+
+    /**
+     * Returns the API tree of the given bundle, computing it with {@code loader} unless it
+     * is available in the store. Concurrent requests of the same bundle wait for a single
+     * computation.
+     */
+    ApiTree getApiTree(final File file, final Callable<ApiTree> loader, final BaselineMetrics metrics) throws Exception {
+        final String key = getKey(file);
+        final FutureTask<ApiTree> task = new FutureTask<ApiTree>(loader);
+        Future<ApiTree> future;
+        synchronized (trees) {
+            future = trees.get(key);
+            if (future == null) {
+                trees.put(key, task);
+            }
+        }
+        if (future == null) {
+            future = task;
+            task.run();
+        } else {
+            metrics.treeCacheHit();
+        }
+
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // don't cache failures, a subsequent request may succeed
+            synchronized (trees) {
+                if (trees.get(key) == future) {
+                    trees.remove(key);
+                }
+            }
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    int size() {
+        synchronized (trees) {
+            return trees.size();
+        }
+    }
+
+    private static String getKey(final File file) throws IOException {
+        return file.getCanonicalPath() + ":" + file.length() + ":" + file.lastModified();
+    }
+}
@@ -0,0 +1,225 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Baselines the bundles of all modules in the reactor concurrently and reports the
+ * findings in a single consolidated failure report.
+ *
+ * The goal runs once per reactor build and therefore needs to run after all modules have
+ * been packaged, e.g. by binding it in a module that is built last or by invoking
+ * {@code mvn verify baselining:baseline-aggregate}.
+ *
+ * The goal also determines which modules of the reactor import changed packages with
+ * version ranges that do not include the packages' new versions, see {@link ConsumerIndex}.
+ * These modules are reported and written to {@code impactFile}, e.g. to only rebuild and
+ * retest the affected modules.
+ *
+ * All bundles are baselined with the configuration of this goal's execution, the
+ * configuration of the plugin in the individual modules, e.g. their {@code skip},
+ * {@code enforcement} or package filters, does not apply.
+ *
+ * @since 1.1.2
+ */
+@Mojo(
+        name = "baseline-aggregate",
+        defaultPhase = LifecyclePhase.VERIFY,
+        requiresProject = true,
+        aggregator = true,
+        threadSafe = true
+)
+public class BaselineAggregateMojo extends AbstractBaselineMojo {
+
+    public static final String MSG_IMPACTED = "%s imports package %s with range %s, which excludes its new version %s";
+
+    public static final String MSG_IMPACTED_REMOVED = "%s imports package %s, which is no longer exported by %s";
+
+    public static final String MSG_NO_IMPACT = "No modules import changed packages with ranges excluding their new versions.";
+
+    /**
+     * The maximum number of modules that are baselined concurrently. Defaults to the number
+     * of available processors if set to a value less than 1. Unless {@code diffThreads} is
+     * set, the modules share the available processors for diffing their packages.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.threads", defaultValue = "0")
+    private int threads;
+
+    /**
+     * The file listing the modules affected by changed packages, one {@code groupId:artifactId}
+     * per line, e.g. to be passed to Maven's {@code --projects} option.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.impactFile",
+            defaultValue = "${project.build.directory}/" + ConsumerIndex.FILE_NAME, required = true)
+    private File impactFile;
+
+    // set before the modules are submitted to the pool, which publishes it to its threads
+    private int poolSize = 1;
+
+    private final Map<MavenProject, BaselineResult> baselineResults = new ConcurrentHashMap<MavenProject, BaselineResult>();
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().debug("Execution skipped via property \"baselining.baseline.skip\"");
+            return;
+        }
+
+        final List<MavenProject> bundleProjects = new ArrayList<MavenProject>();
+        for (final MavenProject project : session.getProjects()) {
+            if (isBundle(project.getArtifact().getFile())) {
+                bundleProjects.add(project);
+            } else {
+                getLog().debug("Skipping " + project.getId() + ", artifact is not a bundle.");
+            }
+        }
+        if (bundleProjects.isEmpty()) {
+            getLog().info("No bundles found in reactor.");
+            return;
+        }
+
+        prefetchAvailableVersions(bundleProjects);
+
+        poolSize = Math.min(bundleProjects.size(), threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        getLog().info("Baselining " + bundleProjects.size() + " bundles using " + poolSize + " threads");
+
+        final ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        try {
+            final List<BufferedLog> logs = new ArrayList<BufferedLog>();
+            final List<Future<String>> results = new ArrayList<Future<String>>();
+            for (final MavenProject project : bundleProjects) {
+                final BufferedLog log = new BufferedLog(getLog(), "[" + project.getArtifactId() + "] ");
+                logs.add(log);
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return baselineProject(log, project);
+                    }
+                }));
+            }
+
+            // output and report in reactor order, independent of completion order
+            final StringBuilder failureReport = new StringBuilder();
+            final List<String> failedModules = new ArrayList<String>();
+            MojoExecutionException error = null;
+            for (int i = 0; i < bundleProjects.size(); i++) {
+                final MavenProject project = bundleProjects.get(i);
+                final BufferedLog log = logs.get(i);
+                try {
+                    final String moduleReport = getResult(project, results.get(i));
+                    if (moduleReport.length() > 0) {
+                        failureReport.append(project.getId()).append(":\n").append(moduleReport).append("\n");
+                    }
+                } catch (MojoExecutionException e) {
+                    // keep collecting the other modules' results and output
+                    log.error(e.getMessage(), e.getCause());
+                    failedModules.add(project.getId());
+                    if (error == null) {
+                        error = e;
+                    }
+                } finally {
+                    log.flush();
+                }
+            }
+            if (error != null) {
+                // the other modules' API changes and impacts are reported before failing
+                if (failureReport.length() > 0) {
+                    getLog().error(MSG_FAILURE + failureReport);
+                }
+                try {
+                    reportImpacts(bundleProjects);
+                } catch (MojoExecutionException e) {
+                    getLog().error(e.getMessage(), e.getCause());
+                }
+                throw new MojoExecutionException("Failed to baseline " + failedModules, error.getCause());
+            }
+            reportImpacts(bundleProjects);
+            if (failureReport.length() > 0) {
+                throw new MojoFailureException(MSG_FAILURE + failureReport);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    protected void projectBaselined(final MavenProject project, final BaselineResult result) {
+        baselineResults.put(project, result);
+    }
+
+    @Override
+    protected int getConcurrentProjects() {
+        return poolSize;
+    }
+
+    /**
+     * Reports the modules importing changed packages with ranges excluding the packages'
+     * new versions and writes them to the {@code impactFile}.
+     */
+    private void reportImpacts(final List<MavenProject> bundleProjects) throws MojoExecutionException {
+        final ConsumerIndex index = new ConsumerIndex();
+        for (final MavenProject project : bundleProjects) {
+            try {
+                index.addConsumer(getModule(project), project.getArtifact().getFile(), getLog());
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to read the imports of " + project.getId(), e);
+            }
+        }
+
+        final List<ConsumerIndex.Impact> impacts = new ArrayList<ConsumerIndex.Impact>();
+        for (final MavenProject project : bundleProjects) {
+            final BaselineResult result = baselineResults.get(project);
+            if (result != null) {
+                impacts.addAll(index.getImpacts(getModule(project), result.getPackages()));
+            }
+        }
+        if (impacts.isEmpty()) {
+            getLog().info(MSG_NO_IMPACT);
+        }
+        for (final ConsumerIndex.Impact impact : impacts) {
+            getLog().warn(impact.getExportVersion() == null
+                    ? String.format(MSG_IMPACTED_REMOVED, impact.getModule(), impact.getPackageName(), impact.getExporter())
+                    : String.format(MSG_IMPACTED, impact.getModule(), impact.getPackageName(), impact.getRange(),
+                            impact.getExportVersion()));
+        }
+        try {
+            ConsumerIndex.write(impactFile, impacts);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write " + impactFile, e);
+        }
+    }
+
+    private static String getModule(final MavenProject project) {
+        return project.getGroupId() + ":" + project.getArtifactId();
+    }
+
+    private static String getResult(final MavenProject project, final Future<String> result) throws MojoExecutionException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while baselining " + project.getId(), e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Unexpected exception while baselining " + project.getId(), e.getCause());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Session scoped store of resolved baseline artifacts.
+ *
+ * Resolving a baseline artifact may require downloading it, while the build waits. The
+ * {@code prefetch} goal starts resolving the baseline artifacts early in the build, in
+ * the background, and the baselining goals later find them resolved or wait for the
+ * pending resolution instead of starting another one. Each baseline artifact is resolved
+ * at most once per session.
+ */
+class BaselineArtifactStore {
+
+    static final SessionScope<BaselineArtifactStore> STORES = new SessionScope<BaselineArtifactStore>();
+
+    private final ConcurrentMap<String, Future<Artifact>> artifacts = new ConcurrentHashMap<String, Future<Artifact>>();
+
+    /**
+     * Returns the store of the given session, creating it if necessary.
+     */
+    static BaselineArtifactStore forSession(final MavenSession session) {
+        return STORES.get(session, new SessionScope.Factory<BaselineArtifactStore>() {
+            public BaselineArtifactStore create() {
+                return new BaselineArtifactStore();
+            }
+        });
+    }
+
+    /**
+     * Runs the given task on a background thread. The task is expected to resolve baseline
+     * artifacts via {@link #getArtifact(String, Callable)}.
+     */
+    void prefetch(final Runnable task) {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("baselining-prefetch"));
+        try {
+            executor.execute(task);
+        } finally {
+            // lets the task complete and the thread terminate afterwards
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Returns the baseline artifact with the given key. If it is being or has been resolved,
+     * the pending or resolved artifact is returned, otherwise it is resolved in the calling
+     * thread using {@code resolver}.
+     */
+    Artifact getArtifact(final String key, final Callable<Artifact> resolver) throws Exception {
+        Future<Artifact> future = artifacts.get(key);
+        if (future == null) {
+            final FutureTask<Artifact> task = new FutureTask<Artifact>(resolver);
+            future = artifacts.putIfAbsent(key, task);
+            if (future == null) {
+                future = task;
+                task.run();
+            }
+        }
+
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // don't cache failures, a subsequent request may succeed
+            artifacts.remove(key, future);
+            final Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Baselines the compiled classes and the bundle manifest generated for them, e.g. by the
+ * {@code manifest} goal of the maven-bundle-plugin, without waiting for the bundle to be
+ * packaged. Bound to the {@code process-classes} phase, API violations fail the build
+ * before the tests run.
+ *
+ * The classes and the manifest are copied into an uncompressed JAR in the build directory,
+ * which is baselined like the packaged bundle.
+ *
+ * @since 1.1.2
+ */
+@Mojo(
+        name = "baseline-classes",
+        defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+        requiresProject = true,
+        threadSafe = true
+)
+public class BaselineClassesMojo extends AbstractBaselineMojo {
+
+    static final String FILE_NAME = "baselining-classes.jar";
+
+    private static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+
+    @Component
+    private MavenProject project;
+
+    /**
+     * The directory containing the compiled classes.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+    private File classesDirectory;
+
+    /**
+     * The bundle manifest of the compiled classes.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.manifest",
+            defaultValue = "${project.build.outputDirectory}/META-INF/MANIFEST.MF", required = true)
+    private File manifest;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().debug("Execution skipped via property \"baselining.baseline.skip\"");
+            return;
+        }
+        if (!classesDirectory.isDirectory() || !manifest.isFile()) {
+            getLog().debug("Execution skipped, no classes or no manifest found in " + classesDirectory
+                    + ", e.g. the manifest goal of the maven-bundle-plugin generates the manifest.");
+            return;
+        }
+
+        final File bundle = new File(project.getBuild().getDirectory(), FILE_NAME);
+        try {
+            pack(classesDirectory, manifest, bundle);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to pack " + classesDirectory + " into " + bundle, e);
+        }
+        if (!isBundle(bundle)) {
+            getLog().debug("Execution skipped, manifest " + manifest + " is not a bundle manifest.");
+            return;
+        }
+
+        prefetchAvailableVersions(getReactorProjectsUsingPlugin());
+
+        final String failureReport;
+        try {
+            failureReport = baselineProject(getLog(), project, bundle);
+        } catch (Exception e) {
+            throw new MojoExecutionException("Unexpected exception during mojo execution", e);
+        }
+        if (failureReport.length() > 0) {
+            throw new MojoFailureException(MSG_FAILURE + failureReport);
+        }
+    }
+
+    /**
+     * Writes the files of the given directory and the manifest into an uncompressed JAR.
+     */
+    static void pack(final File directory, final File manifest, final File jar) throws IOException {
+        jar.getParentFile().mkdirs();
+        final ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(jar)));
+        try {
+            // compressing would take longer than reading the uncompressed entries
+            out.setLevel(Deflater.NO_COMPRESSION);
+            write(out, MANIFEST_NAME, manifest);
+            pack(out, directory, "");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void pack(final ZipOutputStream out, final File directory, final String prefix) throws IOException {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Failed to list " + directory);
+        }
+        // sorted for reproducible JARs
+        Arrays.sort(files);
+        for (final File file : files) {
+            final String name = prefix + file.getName();
+            if (file.isDirectory()) {
+                pack(out, file, name + "/");
+            } else if (!MANIFEST_NAME.equals(name)) {
+                write(out, name, file);
+            }
+        }
+    }
+
+    private static void write(final ZipOutputStream out, final String name, final File file) throws IOException {
+        final ZipEntry entry = new ZipEntry(name);
+        entry.setTime(file.lastModified());
+        out.putNextEntry(entry);
+        final InputStream in = new FileInputStream(file);
+        try {
+            copy(in, out);
+        } finally {
+            in.close();
+        }
+        out.closeEntry();
+    }
+
+    private static void copy(final InputStream in, final OutputStream out) throws IOException {
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.artifact.Artifact;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Timings of the phases of baselining a module, and counts of what was processed.
+ *
+ * The metrics are summarized in one log line and can be written to a file in the
+ * Prometheus text format or as CSV, for aggregating them across builds. Each module
+ * execution records its own metrics, possibly from several threads if it diffs several
+ * baselines concurrently. The times of concurrent phases add up.
+ */
+class BaselineMetrics {
+
+    static final String PROMETHEUS_FILE_NAME = "baselining-metrics.prom";
+
+    static final String CSV_FILE_NAME = "baselining-metrics.csv";
+
+    /**
+     * The phases of baselining a module.
+     */
+    enum Phase {
+        /**
+         * Retrieving the available versions to select the baseline version.
+         */
+        metadata,
+        /**
+         * Resolving, i.e. possibly downloading, the baseline artifact.
+         */
+        resolve,
+        /**
+         * Digesting the class files to find identical or unchanged packages.
+         */
+        digest,
+        /**
+         * Parsing the bundles into API trees, or loading cached API trees.
+         */
+        parse,
+        /**
+         * Diffing the API trees.
+         */
+        diff,
+        /**
+         * Reporting the findings and writing the report.
+         */
+        report
+    }
+
+    /**
+     * The formats of the metrics file.
+     */
+    enum Format {
+        none,
+        prometheus,
+        csv
+    }
+
+    private final long startNanos;
+
+    private final long[] phaseNanos = new long[Phase.values().length];
+
+    private long totalNanos = -1;
+
+    private int packages;
+
+    private int classes;
+
+    private long bytesRead;
+
+    private int treeCacheHits;
+
+    private int treeCacheMisses;
+
+    BaselineMetrics() {
+        this(System.nanoTime());
+    }
+
+    BaselineMetrics(final long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Adds the time elapsed since {@code startNanos}, as returned by {@link System#nanoTime()},
+     * to the given phase.
+     */
+    synchronized void record(final Phase phase, final long startNanos) {
+        add(phase, System.nanoTime() - startNanos);
+    }
+
+    synchronized void add(final Phase phase, final long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    void stop() {
+        stop(System.nanoTime());
+    }
+
+    synchronized void stop(final long endNanos) {
+        if (totalNanos < 0) {
+            totalNanos = endNanos - startNanos;
+        }
+    }
+
+    synchronized void setPackages(final int packages) {
+        this.packages = packages;
+    }
+
+    synchronized void setClasses(final int classes) {
+        this.classes = classes;
+    }
+
+    synchronized void addBytesRead(final long bytes) {
+        bytesRead += bytes;
+    }
+
+    synchronized void treeCacheHit() {
+        treeCacheHits++;
+    }
+
+    synchronized void treeCacheMiss() {
+        treeCacheMisses++;
+    }
+
+    synchronized long getNanos(final Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    synchronized int getTreeCacheHits() {
+        return treeCacheHits;
+    }
+
+    synchronized int getTreeCacheMisses() {
+        return treeCacheMisses;
+    }
+
+    /**
+     * @return a one-line summary, e.g. "Baselining took 812 ms (metadata: 10 ms, ...),
+     * 12 packages, 340 classes, 1260 KB read, 1 tree cache hits, 0 misses"
+     */
+    synchronized String getSummary() {
+        final StringBuilder summary = new StringBuilder("Baselining took ").append(millis(totalNanos)).append(" ms (");
+        for (final Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0) {
+                summary.append(", ");
+            }
+            summary.append(phase.name()).append(": ").append(millis(getNanos(phase))).append(" ms");
+        }
+        return summary.append("), ")
+                .append(packages).append(" packages, ")
+                .append(classes).append(" classes, ")
+                .append((bytesRead + 1023) / 1024).append(" KB read, ")
+                .append(treeCacheHits).append(" tree cache hits, ")
+                .append(treeCacheMisses).append(" misses")
+                .toString();
+    }
+
+    static String getFileName(final Format format) {
+        return format == Format.csv ? CSV_FILE_NAME : PROMETHEUS_FILE_NAME;
+    }
+
+    void write(final File file, final Format format, final Artifact artifact) throws IOException {
+        file.getParentFile().mkdirs();
+        final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            write(out, format, artifact);
+        } finally {
+            out.close();
+        }
+    }
+
+    synchronized void write(final Writer out, final Format format, final Artifact artifact) throws IOException {
+        switch (format) {
+            case prometheus:
+                writePrometheus(out, artifact);
+                break;
+            case csv:
+                writeCsv(out, artifact);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void writePrometheus(final Writer out, final Artifact artifact) throws IOException {
+        final String labels = "group_id=\"" + escapeLabel(artifact.getGroupId())
+                + "\",artifact_id=\"" + escapeLabel(artifact.getArtifactId())
+                + "\",version=\"" + escapeLabel(artifact.getVersion()) + "\"";
+
+        writeHeader(out, "baselining_duration_seconds", "Time spent baselining the module.");
+        out.write("baselining_duration_seconds{" + labels + "} " + seconds(totalNanos) + "\n");
+        writeHeader(out, "baselining_phase_duration_seconds", "Time spent in each phase of baselining the module.");
+        for (final Phase phase : Phase.values()) {
+            out.write("baselining_phase_duration_seconds{" + labels + ",phase=\"" + phase.name() + "\"} "
+                    + seconds(getNanos(phase)) + "\n");
+        }
+        writeGauge(out, "baselining_packages", "Number of exported packages baselined.", labels, packages);
+        writeGauge(out, "baselining_classes", "Number of class files in the bundle.", labels, classes);
+        writeGauge(out, "baselining_read_bytes", "Number of bytes read from bundles.", labels, bytesRead);
+        writeGauge(out, "baselining_tree_cache_hits", "Number of API trees loaded from the cache.", labels, treeCacheHits);
+        writeGauge(out, "baselining_tree_cache_misses", "Number of API trees missing in the cache.", labels, treeCacheMisses);
+    }
+
+    private static void writeGauge(final Writer out, final String name, final String help, final String labels,
+                                   final long value) throws IOException {
+        writeHeader(out, name, help);
+        out.write(name + "{" + labels + "} " + value + "\n");
+    }
+
+    private static void writeHeader(final Writer out, final String name, final String help) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " gauge\n");
+    }
+
+    private void writeCsv(final Writer out, final Artifact artifact) throws IOException {
+        out.write("groupId,artifactId,version,totalMillis");
+        for (final Phase phase : Phase.values()) {
+            out.write("," + phase.name() + "Millis");
+        }
+        out.write(",packages,classes,bytesRead,treeCacheHits,treeCacheMisses\n");
+
+        out.write(artifact.getGroupId() + "," + artifact.getArtifactId() + "," + artifact.getVersion() + ","
+                + millis(totalNanos));
+        for (final Phase phase : Phase.values()) {
+            out.write("," + millis(getNanos(phase)));
+        }
+        out.write("," + packages + "," + classes + "," + bytesRead + "," + treeCacheHits + "," + treeCacheMisses + "\n");
+    }
+
+    private static long millis(final long nanos) {
+        return nanos / 1000000L;
+    }
+
+    private static String seconds(final long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+    }
+
+    private static String escapeLabel(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,45 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Starts resolving the baseline of the current artifact in the background, early in the
+ * build. The baseline version is selected and the baseline artifact is downloaded while
+ * the module is compiled, tested and packaged, so that the {@code baseline} and
+ * {@code baseline-aggregate} goals find it in the local repository.
+ *
+ * The baseline is selected according to the configuration of this execution, hence the
+ * baselining parameters should be configured for the plugin rather than per execution.
+ *
+ * @since 1.1.2
+ */
+@Mojo(
+        name = "prefetch",
+        defaultPhase = LifecyclePhase.INITIALIZE,
+        requiresProject = true,
+        threadSafe = true
+)
+public class BaselinePrefetchMojo extends AbstractBaselineMojo {
+
+    @Component
+    private MavenProject project;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().debug("Execution skipped via property \"baselining.baseline.skip\"");
+            return;
+        }
+        if ("pom".equals(project.getPackaging())) {
+            getLog().debug("Execution skipped, project has packaging \"pom\".");
+            return;
+        }
+
+        prefetchAvailableVersions(getReactorProjectsUsingPlugin());
+        prefetchBaselineArtifacts(getLog(), project);
+    }
+}
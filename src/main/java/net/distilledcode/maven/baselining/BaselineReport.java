@@ -0,0 +1,167 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.version.Version;
+
+import org.apache.maven.artifact.Artifact;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Machine-readable report of the baselining results of a module, written as JSON.
+ *
+ * The report lists the results of all exported packages, the bundle versions and the
+ * messages that failed the build, if any. Its {@code status} is one of {@code noBaseline},
+ * {@code identical} (all classes are identical to the baseline, hence no packages were
+ * diffed), {@code noPackages} (no exported packages match the configured includes and
+ * excludes) or {@code baselined}.
+ */
+class BaselineReport {
+
+    static final String FILE_NAME = "baselining-report.json";
+
+    static final String STATUS_NO_BASELINE = "noBaseline";
+
+    static final String STATUS_IDENTICAL = "identical";
+
+    static final String STATUS_NO_PACKAGES = "noPackages";
+
+    static final String STATUS_BASELINED = "baselined";
+
+    private BaselineReport() {
+    }
+
+    /**
+     * @param baselineVersion the version of the baseline, or the comma separated versions of
+     *                        several baselines, may be {@code null}
+     * @param result the baselining result, may be {@code null} if no packages were diffed
+     * @param failureReport the failure messages, one per line
+     */
+    static void write(final File file, final Artifact artifact, final String baselineVersion,
+                      final String status, final BaselineResult result, final String failureReport) throws IOException {
+        file.getParentFile().mkdirs();
+        final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            write(out, artifact, baselineVersion, status, result, failureReport);
+        } finally {
+            out.close();
+        }
+    }
+
+    static void write(final Writer out, final Artifact artifact, final String baselineVersion,
+                      final String status, final BaselineResult result, final String failureReport) throws IOException {
+        out.write("{\n");
+        writeProperty(out, "  ", "groupId", artifact.getGroupId());
+        out.write(",\n");
+        writeProperty(out, "  ", "artifactId", artifact.getArtifactId());
+        out.write(",\n");
+        writeProperty(out, "  ", "version", artifact.getVersion());
+        out.write(",\n");
+        writeProperty(out, "  ", "baselineVersion", baselineVersion);
+        out.write(",\n");
+        writeProperty(out, "  ", "status", status);
+        out.write(",\n");
+
+        if (result != null) {
+            out.write("  \"bundle\": {\n");
+            writeVersions(out, "    ", result.getOlderVersion(), result.getNewerVersion(), result.getSuggestedVersion());
+            out.write("\n  },\n");
+        }
+
+        out.write("  \"packages\": [");
+        if (result != null) {
+            boolean first = true;
+            for (final PackageResult packageResult : result.getPackages()) {
+                out.write(first ? "\n" : ",\n");
+                first = false;
+                out.write("    {\n");
+                writeProperty(out, "      ", "name", packageResult.getPackageName());
+                out.write(",\n");
+                writeProperty(out, "      ", "delta", packageResult.getDelta().name());
+                out.write(",\n");
+                writeVersions(out, "      ", packageResult.getOlderVersion(), packageResult.getNewerVersion(),
+                        packageResult.getSuggestedVersion());
+                out.write("\n    }");
+            }
+            if (!first) {
+                out.write("\n  ");
+            }
+        }
+        out.write("],\n");
+
+        out.write("  \"failures\": [");
+        boolean first = true;
+        for (final String failure : failureReport.split("\n")) {
+            if (failure.length() > 0) {
+                out.write(first ? "\n    " : ",\n    ");
+                first = false;
+                writeString(out, failure);
+            }
+        }
+        if (!first) {
+            out.write("\n  ");
+        }
+        out.write("]\n}\n");
+    }
+
+    private static void writeVersions(final Writer out, final String indent, final Version olderVersion,
+                                      final Version newerVersion, final Version suggestedVersion) throws IOException {
+        writeProperty(out, indent, "olderVersion", toString(olderVersion));
+        out.write(",\n");
+        writeProperty(out, indent, "newerVersion", toString(newerVersion));
+        out.write(",\n");
+        writeProperty(out, indent, "suggestedVersion", toString(suggestedVersion));
+    }
+
+    private static void writeProperty(final Writer out, final String indent, final String name, final String value)
+            throws IOException {
+        out.write(indent);
+        writeString(out, name);
+        out.write(": ");
+        writeString(out, value);
+    }
+
+    private static void writeString(final Writer out, final String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+                    break;
+            }
+        }
+        out.write('"');
+    }
+
+    private static String toString(final Version version) {
+        return version == null ? null : version.toString();
+    }
+}
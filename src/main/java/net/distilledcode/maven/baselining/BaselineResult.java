@@ -0,0 +1,139 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.Baseline;
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.version.Version;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The result of baselining a bundle: the results of all its exported packages, ordered by
+ * package name, and the bundle versions.
+ */
+public class BaselineResult {
+
+    private final SortedMap<String, PackageResult> packages;
+
+    private final Version olderVersion;
+
+    private final Version newerVersion;
+
+    private final Version suggestedVersion;
+
+    public BaselineResult(final Collection<PackageResult> packageResults, final Version olderVersion,
+                          final Version newerVersion, final Version suggestedVersion) {
+        this.packages = new TreeMap<String, PackageResult>();
+        for (final PackageResult packageResult : packageResults) {
+            packages.put(packageResult.getPackageName(), packageResult);
+        }
+        this.olderVersion = olderVersion;
+        this.newerVersion = newerVersion;
+        this.suggestedVersion = suggestedVersion;
+    }
+
+    static BaselineResult from(final Baseline baseline) {
+        final SortedMap<String, PackageResult> packageResults = new TreeMap<String, PackageResult>();
+        for (final Baseline.Info info : baseline.getPackageInfos()) {
+            packageResults.put(info.packageName, PackageResult.from(info));
+        }
+        return new BaselineResult(packageResults.values(), baseline.getOlderVersion(),
+                baseline.getNewerVersion(), baseline.getSuggestedVersion());
+    }
+
+    /**
+     * Combines the results of baselining a bundle against several baselines. For each package,
+     * and for the bundle, the result suggesting the highest version is kept: it satisfies the
+     * requirements of all baselines. Removed packages suggest no version and are always kept.
+     * Of equal suggestions, the one of the first result wins.
+     */
+    static BaselineResult combine(final List<BaselineResult> results) {
+        final SortedMap<String, PackageResult> packageResults = new TreeMap<String, PackageResult>();
+        BaselineResult bundleResult = null;
+        for (final BaselineResult result : results) {
+            for (final PackageResult packageResult : result.getPackages()) {
+                final PackageResult current = packageResults.get(packageResult.getPackageName());
+                if (current == null || requiresHigherVersion(packageResult.getSuggestedVersion(), current.getSuggestedVersion())) {
+                    packageResults.put(packageResult.getPackageName(), packageResult);
+                }
+            }
+            if (bundleResult == null || requiresHigherVersion(result.getSuggestedVersion(), bundleResult.getSuggestedVersion())) {
+                bundleResult = result;
+            }
+        }
+        if (bundleResult == null) {
+            throw new IllegalArgumentException("No results to combine");
+        }
+        return new BaselineResult(packageResults.values(), bundleResult.getOlderVersion(),
+                bundleResult.getNewerVersion(), bundleResult.getSuggestedVersion());
+    }
+
+    private static boolean requiresHigherVersion(final Version suggested, final Version current) {
+        if (current == null) {
+            return false;
+        }
+        return suggested == null || suggested.compareTo(current) > 0;
+    }
+
+    /**
+     * Suggests the bundle version for the given package results the same way bnd's
+     * {@link Baseline} does, i.e. based on the most severe package delta.
+     */
+    static Version suggestBundleVersion(final Collection<PackageResult> packageResults, final Version olderVersion) {
+        Delta highestDelta = Delta.MICRO;
+        for (final PackageResult packageResult : packageResults) {
+            if (packageResult.getDelta().compareTo(highestDelta) > 0) {
+                highestDelta = packageResult.getDelta();
+            }
+        }
+        switch (highestDelta) {
+            case MAJOR:
+                return new Version(olderVersion.getMajor() + 1, 0, 0);
+            case MINOR:
+            case ADDED:
+                return new Version(olderVersion.getMajor(), olderVersion.getMinor() + 1, 0);
+            default:
+                return new Version(olderVersion.getMajor(), olderVersion.getMinor(), olderVersion.getMicro() + 1);
+        }
+    }
+
+    /**
+     * @return a result with the results of the given packages only, suggesting the bundle
+     * version for these packages
+     */
+    BaselineResult select(final Set<String> packageNames) {
+        final List<PackageResult> packageResults = new ArrayList<PackageResult>();
+        for (final PackageResult packageResult : packages.values()) {
+            if (packageNames.contains(packageResult.getPackageName())) {
+                packageResults.add(packageResult);
+            }
+        }
+        return new BaselineResult(packageResults, olderVersion, newerVersion,
+                suggestBundleVersion(packageResults, olderVersion));
+    }
+
+    public Collection<PackageResult> getPackages() {
+        return Collections.unmodifiableCollection(packages.values());
+    }
+
+    public PackageResult getPackage(final String packageName) {
+        return packages.get(packageName);
+    }
+
+    public Version getOlderVersion() {
+        return olderVersion;
+    }
+
+    public Version getNewerVersion() {
+        return newerVersion;
+    }
+
+    public Version getSuggestedVersion() {
+        return suggestedVersion;
+    }
+}
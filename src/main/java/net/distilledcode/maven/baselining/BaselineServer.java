@@ -0,0 +1,395 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.Baseline;
+import aQute.bnd.differ.DiffPluginImpl;
+import aQute.bnd.osgi.Instructions;
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.service.diff.Differ;
+import aQute.bnd.version.Version;
+import aQute.libg.reporter.ReporterAdapter;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-lived baselining service listening on a loopback port.
+ *
+ * Baselining in a fresh JVM pays for loading bnd's classes, for the JIT compiling its diff
+ * engine and for parsing the same baseline bundles over and over again. The server keeps
+ * all of this warm between builds: mojo executions send it the paths of the bundle and its
+ * baselines and receive the baselining result (see {@link #baseline(File, int, File, List, Set)}).
+ * The API trees of baselines are kept in an {@link ApiTreeStore}, keyed by path, size and
+ * modification time. Released baselines do not change, whereas the bundle being built does,
+ * possibly within the file system's timestamp resolution, hence its API is never cached.
+ *
+ * The server only accepts connections from the local host, and only from clients presenting
+ * the random token it writes to a file only readable by the user running it (see
+ * {@link #getTokenFile(File, int)}), as it reads the bundles the client names with that
+ * user's permissions.
+ */
+class BaselineServer implements Closeable {
+
+    private static final int MAGIC = 0x42534c4e; // "BSLN"
+
+    private static final int PROTOCOL_VERSION = 2;
+
+    /**
+     * The default directory of the token files, readable only by the user's builds.
+     */
+    static final File DEFAULT_TOKEN_DIRECTORY = new File(System.getProperty("user.home"), ".m2");
+
+    private static final int TOKEN_LENGTH = 32;
+
+    private static final int QUEUE_SIZE = 64;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 250;
+
+    // clients send their request right after connecting, idle connections must not hold workers
+    private static final int REQUEST_TIMEOUT_MILLIS = 5 * 1000;
+
+    private static final int RESPONSE_TIMEOUT_MILLIS = 2 * 60 * 1000;
+
+    private final ServerSocket serverSocket;
+
+    private final ApiTreeStore store;
+
+    private final Log log;
+
+    private final byte[] token;
+
+    private final File tokenFile;
+
+    // bounded, a flood of connections is rejected rather than spawning threads without limit
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param port the port to listen on, {@code 0} for any free port
+     * @param cacheSize the maximum number of API trees of baselines kept in memory
+     * @param tokenDirectory the directory to write the token file to
+     */
+    BaselineServer(final int port, final int cacheSize, final File tokenDirectory, final Log log) throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getByName(null), port));
+        this.store = new ApiTreeStore(cacheSize);
+        this.log = log;
+        this.token = new byte[TOKEN_LENGTH];
+        new SecureRandom().nextBytes(token);
+        this.tokenFile = getTokenFile(tokenDirectory, getPort());
+        try {
+            writeToken(tokenFile, token, log);
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+        final int threads = Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new DaemonThreadFactory("baselining-server"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the file holding the token of the server listening on the given port
+     */
+    static File getTokenFile(final File tokenDirectory, final int port) {
+        return new File(tokenDirectory, "baselining-server-" + port + ".token");
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts and serves connections until the server is closed.
+     */
+    void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.warn("Too many baselining requests, rejecting connection from " + socket.getRemoteSocketAddress());
+                socket.close();
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        executor.shutdownNow();
+        try {
+            serverSocket.close();
+        } finally {
+            if (!tokenFile.delete() && tokenFile.exists()) {
+                log.warn("Failed to delete " + tokenFile);
+            }
+        }
+    }
+
+    private void handle(final Socket socket) {
+        try {
+            try {
+                socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                final int magic = in.readInt();
+                final int protocolVersion = in.readInt();
+                if (magic != MAGIC || protocolVersion != PROTOCOL_VERSION) {
+                    writeError(out, "Unsupported protocol version " + protocolVersion);
+                    return;
+                }
+                final byte[] clientToken = new byte[TOKEN_LENGTH];
+                in.readFully(clientToken);
+                if (!MessageDigest.isEqual(token, clientToken)) {
+                    log.warn("Rejected baselining request with an invalid token from " + socket.getRemoteSocketAddress());
+                    writeError(out, "Invalid token");
+                    return;
+                }
+                final File newer = new File(in.readUTF());
+                final List<File> baselines = new ArrayList<File>();
+                for (int i = in.readInt(); i > 0; i--) {
+                    baselines.add(new File(in.readUTF()));
+                }
+                final Set<String> packages = readPackages(in);
+
+                final long start = System.nanoTime();
+                final BaselineResult result;
+                try {
+                    result = baseline(newer, baselines, packages);
+                } catch (Exception e) {
+                    log.warn("Failed to baseline " + newer + ": " + e);
+                    writeError(out, String.valueOf(e));
+                    return;
+                }
+                out.writeBoolean(true);
+                writeResult(out, result);
+                out.flush();
+                log.info("Baselined " + newer + " against " + baselines + " in "
+                        + (System.nanoTime() - start) / 1000000L + " ms");
+            } finally {
+                socket.close();
+            }
+        } catch (IOException e) {
+            log.debug("Failed to serve baselining request", e);
+        }
+    }
+
+    private BaselineResult baseline(final File newer, final List<File> baselines, final Set<String> packages) throws Exception {
+        final Differ differ = new DiffPluginImpl();
+        final BaselineMetrics metrics = new BaselineMetrics();
+        final ApiTree n;
+        final BundleArchive archive = BundleArchive.open(newer, log);
+        try {
+            n = ApiTree.create(differ, archive, packages);
+        } finally {
+            archive.close();
+        }
+        final Instructions packageFilters = packages == null ? new Instructions() : new Instructions(packages);
+
+        final List<BaselineResult> results = new ArrayList<BaselineResult>();
+        for (final File file : baselines) {
+            final ApiTree o = store.getApiTree(file, new Callable<ApiTree>() {
+                public ApiTree call() throws Exception {
+                    return ApiSignature.isApiSignature(file)
+                            ? ApiSignature.readApiTree(file, differ)
+                            : BaselineTreeCache.createApiTree(file, differ, log);
+                }
+            }, metrics);
+            final Baseline baseline = new Baseline(new ReporterAdapter(), differ);
+            baseline.baseline(n.getTree(), n.getExports(), o.getTree(), o.getExports(), packageFilters);
+            results.add(BaselineResult.from(baseline));
+        }
+        return BaselineResult.combine(results);
+    }
+
+    /**
+     * Baselines a bundle using the server listening on the given loopback port. The result's
+     * package results have no diffs.
+     *
+     * @param tokenDirectory the directory the server wrote its token file to
+     * @param packages the packages to baseline, or {@code null} for all
+     * @return the combined result of baselining against all given baselines, see
+     * {@link BaselineResult#combine(List)}
+     * @throws ConnectException if no server is listening or no token file exists
+     * @throws IOException if the server failed to baseline the bundle
+     */
+    static BaselineResult baseline(final File tokenDirectory, final int port, final File newer, final List<File> baselines,
+                                   final Set<String> packages) throws IOException {
+        final byte[] token = readToken(getTokenFile(tokenDirectory, port));
+        final Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getByName(null), port), CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(RESPONSE_TIMEOUT_MILLIS);
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(MAGIC);
+            out.writeInt(PROTOCOL_VERSION);
+            out.write(token);
+            out.writeUTF(newer.getAbsolutePath());
+            out.writeInt(baselines.size());
+            for (final File baseline : baselines) {
+                out.writeUTF(baseline.getAbsolutePath());
+            }
+            writePackages(out, packages);
+            out.flush();
+
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            if (!in.readBoolean()) {
+                throw new IOException("Baselining server failed: " + in.readUTF());
+            }
+            return readResult(in);
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Writes the token to a new file only the current user can read and write. File systems
+     * without POSIX permissions, e.g. on Windows, do not support revoking the permissions of
+     * other users, the file is then only protected by the permissions of its directory.
+     */
+    private static void writeToken(final File file, final byte[] token, final Log log) throws IOException {
+        final File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create " + directory);
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Failed to delete the stale token file " + file);
+        }
+        if (!file.createNewFile()) {
+            throw new IOException("Token file " + file + " was created concurrently");
+        }
+        // restricted before the token is written, each change is attempted even if another is unsupported
+        final boolean restricted = file.setReadable(false, false) & file.setReadable(true, true)
+                & file.setWritable(false, false) & file.setWritable(true, true);
+        if (!restricted) {
+            log.warn("Failed to restrict the permissions of " + file + " to the current user, the token is only"
+                    + " protected by the permissions of " + directory);
+        }
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(token);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] readToken(final File file) throws IOException {
+        final DataInputStream in;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+        } catch (FileNotFoundException e) {
+            throw new ConnectException("No baselining server token in " + file);
+        }
+        try {
+            final byte[] token = new byte[TOKEN_LENGTH];
+            in.readFully(token);
+            return token;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeError(final DataOutputStream out, final String message) throws IOException {
+        out.writeBoolean(false);
+        out.writeUTF(message);
+        out.flush();
+    }
+
+    private static void writePackages(final DataOutput out, final Set<String> packages) throws IOException {
+        out.writeInt(packages == null ? -1 : packages.size());
+        if (packages != null) {
+            for (final String packageName : packages) {
+                out.writeUTF(packageName);
+            }
+        }
+    }
+
+    private static Set<String> readPackages(final DataInput in) throws IOException {
+        final int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        final Set<String> packages = new LinkedHashSet<String>();
+        for (int i = 0; i < size; i++) {
+            packages.add(in.readUTF());
+        }
+        return packages;
+    }
+
+    static void writeResult(final DataOutput out, final BaselineResult result) throws IOException {
+        writeVersion(out, result.getOlderVersion());
+        writeVersion(out, result.getNewerVersion());
+        writeVersion(out, result.getSuggestedVersion());
+        out.writeInt(result.getPackages().size());
+        for (final PackageResult packageResult : result.getPackages()) {
+            out.writeUTF(packageResult.getPackageName());
+            out.writeUTF(packageResult.getDelta().name());
+            writeVersion(out, packageResult.getOlderVersion());
+            writeVersion(out, packageResult.getNewerVersion());
+            writeVersion(out, packageResult.getSuggestedVersion());
+        }
+    }
+
+    static BaselineResult readResult(final DataInput in) throws IOException {
+        final Version olderVersion = readVersion(in);
+        final Version newerVersion = readVersion(in);
+        final Version suggestedVersion = readVersion(in);
+        final int size = in.readInt();
+        final List<PackageResult> packageResults = new ArrayList<PackageResult>(size);
+        for (int i = 0; i < size; i++) {
+            packageResults.add(new PackageResult(in.readUTF(), Delta.valueOf(in.readUTF()),
+                    readVersion(in), readVersion(in), readVersion(in), null));
+        }
+        return new BaselineResult(packageResults, olderVersion, newerVersion, suggestedVersion);
+    }
+
+    private static void writeVersion(final DataOutput out, final Version version) throws IOException {
+        out.writeBoolean(version != null);
+        if (version != null) {
+            out.writeUTF(version.toString());
+        }
+    }
+
+    private static Version readVersion(final DataInput in) throws IOException {
+        return in.readBoolean() ? new Version(in.readUTF()) : null;
+    }
+}
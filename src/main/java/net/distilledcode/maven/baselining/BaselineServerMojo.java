@@ -0,0 +1,65 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.IOException;
+
+/**
+ * Runs a baselining server on a loopback port until the build is interrupted, e.g. by
+ * pressing Ctrl-C. Baselining goals configured with the same {@code serverPort} delegate
+ * diffing bundles to the server, which keeps parsed baselines and its JIT-compiled code
+ * warm between builds. If the server is not running, they baseline in-process.
+ *
+ * Clients authenticate with a random token the server writes to
+ * <code>${user.home}/.m2/baselining-server-&lt;port&gt;.token</code>, readable only by the current user.
+ *
+ * @since 1.1.2
+ */
+@Mojo(
+        name = "server",
+        requiresProject = false,
+        threadSafe = true
+)
+public class BaselineServerMojo extends AbstractMojo {
+
+    /**
+     * The loopback port to listen on.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.server.port", defaultValue = "7681")
+    private int serverPort;
+
+    /**
+     * The maximum number of API trees of baselines the server keeps in memory.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.server.cacheSize", defaultValue = "256")
+    private int serverCacheSize;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        final BaselineServer server;
+        try {
+            server = new BaselineServer(serverPort, serverCacheSize, BaselineServer.DEFAULT_TOKEN_DIRECTORY, getLog());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to listen on port " + serverPort + ": " + e.getMessage(), e);
+        }
+        getLog().info("Baselining server listening on port " + server.getPort() + ", press Ctrl-C to stop");
+        try {
+            server.serve();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Baselining server failed", e);
+        } finally {
+            try {
+                server.close();
+            } catch (IOException e) {
+                getLog().debug("Failed to close baselining server", e);
+            }
+        }
+    }
+}
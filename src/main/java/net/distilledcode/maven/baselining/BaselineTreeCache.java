@@ -0,0 +1,165 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.service.diff.Differ;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Persistent cache of the {@link ApiTree}s of released baseline artifacts.
+ *
+ * Released artifacts never change, so their API tree only needs to be computed once.
+ * Entries are keyed by the artifact's coordinates and the SHA-1 checksum of its file,
+ * which guards against re-deployed or otherwise modified releases. Snapshot artifacts
+ * are never cached.
+ *
+ * The file names also contain the bnd version, the {@link TreeSerializer} format and the
+ * {@link #TREE_VERSION}, hence entries written by another bnd version or plugin release
+ * computing or serializing trees differently are never read but computed anew.
+ */
+public class BaselineTreeCache {
+
+    private static final String EXTENSION = ".tree";
+
+    /**
+     * Version of the trees computed by {@link ApiTree#create}, to be raised whenever the
+     * computation changes.
+     */
+    private static final int TREE_VERSION = 1;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File directory;
+
+    private final Log log;
+
+    public BaselineTreeCache(final File directory, final Log log) {
+        this.directory = directory;
+        this.log = log;
+    }
+
+    public ApiTree getApiTree(final Artifact artifact, final Differ differ) throws Exception {
+        return getApiTree(artifact, differ, new BaselineMetrics());
+    }
+
+    /**
+     * Returns the API tree of the given artifact, recording cache hits and misses as well
+     * as the bytes read to create the tree in {@code metrics}.
+     */
+    ApiTree getApiTree(final Artifact artifact, final Differ differ, final BaselineMetrics metrics) throws Exception {
+        final File file = artifact.getFile();
+        if (artifact.isSnapshot()) {
+            return createApiTree(file, differ, metrics, log);
+        }
+
+        final File cacheFile = getCacheFile(artifact, getCacheFileName(sha1(file)));
+        if (cacheFile.isFile()) {
+            try {
+                final ApiTree apiTree = read(cacheFile, differ);
+                log.debug("Loaded API tree of " + artifact + " from " + cacheFile);
+                metrics.treeCacheHit();
+                return apiTree;
+            } catch (Exception e) {
+                log.debug("Ignoring unreadable API tree cache entry " + cacheFile, e);
+            }
+        }
+
+        metrics.treeCacheMiss();
+        final ApiTree apiTree = createApiTree(file, differ, metrics, log);
+        try {
+            write(cacheFile, apiTree);
+            log.debug("Stored API tree of " + artifact + " in " + cacheFile);
+        } catch (IOException e) {
+            log.warn("Failed to store API tree of " + artifact + " in " + cacheFile + ": " + e.getMessage());
+        }
+        return apiTree;
+    }
+
+    private File getCacheFile(final Artifact artifact, final String fileName) {
+        final String path = artifact.getGroupId().replace('.', File.separatorChar)
+                + File.separator + artifact.getArtifactId()
+                + File.separator + artifact.getVersion()
+                + File.separator + fileName;
+        return new File(directory, path);
+    }
+
+    /**
+     * @return the name of the cache file of an artifact with the given checksum
+     */
+    static String getCacheFileName(final String checksum) {
+        return checksum + "-bnd-" + TreeSerializer.BND_VERSION
+                + "-" + TreeSerializer.FORMAT_VERSION + "." + TREE_VERSION + EXTENSION;
+    }
+
+    static ApiTree createApiTree(final File file, final Differ differ, final Log log) throws Exception {
+        return createApiTree(file, differ, new BaselineMetrics(), log);
+    }
+
+    static ApiTree createApiTree(final File file, final Differ differ, final BaselineMetrics metrics, final Log log)
+            throws Exception {
+        final BundleArchive archive = BundleArchive.open(file, log);
+        try {
+            return ApiTree.create(differ, archive, null);
+        } finally {
+            metrics.addBytesRead(archive.getBytesRead());
+            archive.close();
+        }
+    }
+
+    private static ApiTree read(final File cacheFile, final Differ differ) throws Exception {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+        try {
+            return TreeSerializer.read(in, differ);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(final File cacheFile, final ApiTree apiTree) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        TreeSerializer.write(out, apiTree);
+        out.close();
+        CacheFiles.write(cacheFile, bytes.toByteArray());
+    }
+
+    static String sha1(final File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return toHex(digest.digest());
+    }
+
+    static String toHex(final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -2,41 +2,106 @@ package net.distilledcode.maven.baselining;
 
 import org.apache.maven.artifact.versioning.ArtifactVersion;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.List;
 
 public class BaselineVersionSelector {
     private BaselineVersionSelector() {
     }
 
-    public static ArtifactVersion selectBaselineVersion(final ArtifactVersion current, final Collection<ArtifactVersion> otherVersions) {
-        final List<ArtifactVersion> candidateVersions = new ArrayList<ArtifactVersion>(otherVersions);
-        removeSnapshotVersions(candidateVersions);
-        removeVersionsSmallerThanCurrent(current, candidateVersions);
-        Collections.sort(candidateVersions, Collections.reverseOrder());
-        return candidateVersions.size() > 0 ? candidateVersions.get(0) : null;
-    }
+    /**
+     * Strategies to select the baseline version among the released versions preceding
+     * the current version.
+     */
+    public static enum Strategy {
+        /**
+         * The latest released version preceding the current version.
+         */
+        latest {
+            @Override
+            boolean accepts(final ArtifactVersion current, final ArtifactVersion candidate) {
+                return true;
+            }
+        },
+        /**
+         * The latest released version preceding the current version with the same major version.
+         */
+        sameMajor {
+            @Override
+            boolean accepts(final ArtifactVersion current, final ArtifactVersion candidate) {
+                return candidate.getMajorVersion() == current.getMajorVersion();
+            }
+        },
+        /**
+         * The latest released version preceding the current version with the same major and
+         * minor version.
+         */
+        sameMinor {
+            @Override
+            boolean accepts(final ArtifactVersion current, final ArtifactVersion candidate) {
+                return candidate.getMajorVersion() == current.getMajorVersion()
+                        && candidate.getMinorVersion() == current.getMinorVersion();
+            }
+        },
+        /**
+         * The latest released version of a preceding minor version with the same major version.
+         */
+        previousMinor {
+            @Override
+            boolean accepts(final ArtifactVersion current, final ArtifactVersion candidate) {
+                return candidate.getMajorVersion() == current.getMajorVersion()
+                        && candidate.getMinorVersion() < current.getMinorVersion();
+            }
+        },
+        /**
+         * The latest released version of a preceding major version.
+         */
+        previousMajor {
+            @Override
+            boolean accepts(final ArtifactVersion current, final ArtifactVersion candidate) {
+                return candidate.getMajorVersion() < current.getMajorVersion();
+            }
+        };
 
-    private static void removeVersionsSmallerThanCurrent(final ArtifactVersion current, final Iterable<ArtifactVersion> versions) {
-        final Iterator<ArtifactVersion> versionIterator = versions.iterator();
-        while (versionIterator.hasNext()) {
-            final ArtifactVersion version = versionIterator.next();
-            if (version.compareTo(current) >= 0) {
-                versionIterator.remove();
+        abstract boolean accepts(ArtifactVersion current, ArtifactVersion candidate);
+
+        /**
+         * @return the strategy with the given name, or {@code null} if there is none
+         */
+        static Strategy forName(final String name) {
+            for (final Strategy strategy : values()) {
+                if (strategy.name().equals(name)) {
+                    return strategy;
+                }
             }
+            return null;
         }
     }
 
-    private static void removeSnapshotVersions(final Iterable<ArtifactVersion> versions) {
-        final Iterator<ArtifactVersion> versionIterator = versions.iterator();
-        while (versionIterator.hasNext()) {
-            final ArtifactVersion version = versionIterator.next();
-            if ("SNAPSHOT".equals(version.getQualifier())) {
-                versionIterator.remove();
+    public static ArtifactVersion selectBaselineVersion(final ArtifactVersion current, final Collection<ArtifactVersion> otherVersions) {
+        return selectBaselineVersion(current, otherVersions, Strategy.latest);
+    }
+
+    /**
+     * Selects the greatest non-snapshot version smaller than {@code current} that is accepted
+     * by the given {@code strategy}, in a single pass over {@code otherVersions}.
+     *
+     * @return the baseline version, or {@code null} if there is none
+     */
+    public static ArtifactVersion selectBaselineVersion(final ArtifactVersion current, final Collection<ArtifactVersion> otherVersions,
+                                                        final Strategy strategy) {
+        ArtifactVersion baselineVersion = null;
+        for (final ArtifactVersion version : otherVersions) {
+            if (isSnapshot(version) || version.compareTo(current) >= 0) {
+                continue;
+            }
+            if ((baselineVersion == null || version.compareTo(baselineVersion) > 0) && strategy.accepts(current, version)) {
+                baselineVersion = version;
             }
         }
+        return baselineVersion;
+    }
+
+    private static boolean isSnapshot(final ArtifactVersion version) {
+        return "SNAPSHOT".equals(version.getQualifier());
     }
 }
@@ -0,0 +1,133 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Baselines the compiled classes and their bundle manifest whenever they change, until
+ * the build is interrupted, e.g. by pressing Ctrl-C. Meant to run next to an IDE or a
+ * continuous compilation, reporting API changes within moments of compiling them.
+ *
+ * The baseline is resolved and parsed once and kept in memory. On each change only the
+ * exported packages whose class files or exports changed are diffed again, the results of
+ * the other packages are kept from the previous run. The classes directory is polled for
+ * changes, and baselined once no further changes occur within one {@code watchInterval}.
+ *
+ * @since 1.1.2
+ */
+@Mojo(
+        name = "watch",
+        requiresProject = true,
+        threadSafe = true
+)
+public class BaselineWatchMojo extends AbstractBaselineMojo {
+
+    @Component
+    private MavenProject project;
+
+    /**
+     * The directory containing the compiled classes.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+    private File classesDirectory;
+
+    /**
+     * The bundle manifest of the compiled classes.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.manifest",
+            defaultValue = "${project.build.outputDirectory}/META-INF/MANIFEST.MF", required = true)
+    private File manifest;
+
+    /**
+     * The interval in milliseconds at which the compiled classes are checked for changes.
+     *
+     * @since 1.1.2
+     */
+    @Parameter(property = "baselining.baseline.watchInterval", defaultValue = "500")
+    private long watchInterval;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().debug("Execution skipped via property \"baselining.baseline.skip\"");
+            return;
+        }
+
+        final BaselineWatcher watcher;
+        try {
+            final List<Artifact> baselineArtifacts = resolveBaselineArtifacts(getLog(), project);
+            if (baselineArtifacts.isEmpty()) {
+                getLog().info(MSG_NO_BASELINE);
+                return;
+            }
+            watcher = createWatcher(getLog(), baselineArtifacts);
+        } catch (Exception e) {
+            throw new MojoExecutionException("Failed to load the baseline", e);
+        }
+
+        final File bundle = new File(project.getBuild().getDirectory(), BaselineClassesMojo.FILE_NAME);
+        getLog().info("Watching " + classesDirectory + " for changes, press Ctrl-C to stop");
+        Map<String, Long> baselined = null;
+        Map<String, Long> previous = null;
+        while (!Thread.currentThread().isInterrupted()) {
+            final Map<String, Long> current = BaselineWatcher.snapshot(classesDirectory, manifest);
+            // wait for the compiler to finish writing, unless this is the first run
+            if (!current.equals(baselined) && (baselined == null || current.equals(previous))) {
+                baseline(watcher, bundle);
+                baselined = current;
+            }
+            previous = current;
+            try {
+                Thread.sleep(watchInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Baselines the current classes, logging rather than throwing failures to keep watching.
+     */
+    private void baseline(final BaselineWatcher watcher, final File bundle) {
+        if (!classesDirectory.isDirectory() || !manifest.isFile()) {
+            getLog().info("No classes or no manifest found in " + classesDirectory
+                    + ", e.g. the manifest goal of the maven-bundle-plugin generates the manifest.");
+            return;
+        }
+        final long start = System.nanoTime();
+        try {
+            BaselineClassesMojo.pack(classesDirectory, manifest, bundle);
+            if (!isBundle(bundle)) {
+                getLog().info("Manifest " + manifest + " is not a bundle manifest.");
+                return;
+            }
+            final BundleArchive archive = BundleArchive.open(bundle, getLog());
+            try {
+                final BaselineResult result = watcher.baseline(archive);
+                if (result == null) {
+                    getLog().info(MSG_NO_PACKAGES);
+                } else {
+                    reportFindings(getLog(), result);
+                }
+            } finally {
+                archive.close();
+            }
+            getLog().info("Baselined " + watcher.getDiffedPackages() + " changed package(s) in "
+                    + (System.nanoTime() - start) / 1000000L + " ms");
+        } catch (Exception e) {
+            getLog().error("Baselining failed: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.service.diff.Differ;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Repeatedly baselines a changing bundle against baselines whose API trees stay in memory.
+ *
+ * Each run only diffs the exported packages that changed since the previous run, as
+ * determined by an in-memory {@link IncrementalState} per baseline.
+ */
+class BaselineWatcher {
+
+    private final Differ differ;
+
+    private final List<ApiTree> baselines;
+
+    private final PackageFilter packageFilter;
+
+    private final int threads;
+
+    private final List<IncrementalState> states = new ArrayList<IncrementalState>();
+
+    private int diffedPackages;
+
+    /**
+     * @param baselines the API trees of the baselines, kept for the lifetime of the watcher
+     * @param packageFilter selects the packages to baseline
+     * @param threads the maximum number of threads diffing the packages of a bundle
+     */
+    BaselineWatcher(final Differ differ, final List<ApiTree> baselines, final PackageFilter packageFilter,
+                    final int threads) {
+        this.differ = differ;
+        this.baselines = baselines;
+        this.packageFilter = packageFilter;
+        this.threads = threads;
+        for (int i = 0; i < baselines.size(); i++) {
+            states.add(null);
+        }
+    }
+
+    /**
+     * Baselines the given bundle, diffing only the packages that changed since the last run.
+     *
+     * @return the combined result of all baselines, see {@link BaselineResult#combine(List)},
+     *         or {@code null} if no exported packages match the package filter
+     */
+    BaselineResult baseline(final BundleArchive bundle) throws Exception {
+        final Set<String> packages = selectPackages(bundle);
+        if (packages != null && packages.isEmpty()) {
+            return null;
+        }
+        final PackageDigests digests = PackageDigests.compute(bundle);
+        final List<BaselineResult> results = new ArrayList<BaselineResult>();
+        int diffed = 0;
+        for (int i = 0; i < baselines.size(); i++) {
+            final String baselineKey = String.valueOf(i);
+            final IncrementalState state = states.get(i);
+            final Set<String> dirty = state == null ? null : state.getDirtyPackages(baselineKey, digests);
+
+            final BaselineResult result;
+            if (dirty == null) {
+                result = diff(bundle, baselines.get(i), packages);
+                diffed = Math.max(diffed, result.getPackages().size());
+            } else {
+                if (packages != null) {
+                    dirty.retainAll(packages);
+                }
+                final BaselineResult partial = dirty.isEmpty() ? null : diff(bundle, baselines.get(i), dirty);
+                final BaselineResult merged = state.merge(dirty, partial, digests.getBundleVersion());
+                // the last run may have baselined packages that are no longer selected
+                result = packages == null ? merged : merged.select(packages);
+                diffed = Math.max(diffed, dirty.size());
+            }
+            states.set(i, new IncrementalState(baselineKey, digests, result));
+            results.add(result);
+        }
+        diffedPackages = diffed;
+        return BaselineResult.combine(results);
+    }
+
+    /**
+     * @return the number of packages diffed by the last run
+     */
+    int getDiffedPackages() {
+        return diffedPackages;
+    }
+
+    /**
+     * @return the packages exported by the bundle or any of the baselines matching the
+     *         package filter, or {@code null} if it is empty
+     */
+    private Set<String> selectPackages(final BundleArchive bundle) throws IOException {
+        if (packageFilter.isEmpty()) {
+            return null;
+        }
+        final Set<String> exported = new HashSet<String>(bundle.getExportedPackages());
+        for (final ApiTree baseline : baselines) {
+            exported.addAll(baseline.getExports().keySet());
+        }
+        return packageFilter.select(exported);
+    }
+
+    private BaselineResult diff(final BundleArchive bundle, final ApiTree baseline, final Set<String> packages) throws Exception {
+        final ApiTree apiTree = ApiTree.create(differ, bundle, packages);
+        return ParallelBaseline.baseline(differ, apiTree, baseline, packages, threads);
+    }
+
+    /**
+     * Captures the modification times and sizes of all files in the given directories and
+     * of the given files, to detect changes by comparing snapshots.
+     */
+    static Map<String, Long> snapshot(final File... files) {
+        final Map<String, Long> snapshot = new TreeMap<String, Long>();
+        for (final File file : files) {
+            snapshot(file, snapshot);
+        }
+        return snapshot;
+    }
+
+    private static void snapshot(final File file, final Map<String, Long> snapshot) {
+        if (file.isDirectory()) {
+            final File[] children = file.listFiles();
+            if (children != null) {
+                for (final File child : children) {
+                    snapshot(child, snapshot);
+                }
+            }
+        } else if (file.isFile()) {
+            snapshot.put(file.getPath(), file.lastModified() * 31 + file.length());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Log} that records all messages in memory and writes them to a
+ * delegate {@link Log} on {@link #flush()}. This allows baselining several
+ * modules concurrently while keeping each module's output together.
+ */
+class BufferedLog implements Log {
+
+    private enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private final Log delegate;
+
+    private final String prefix;
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    BufferedLog(final Log delegate, final String prefix) {
+        this.delegate = delegate;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Writes all recorded messages to the delegate {@link Log}.
+     */
+    synchronized void flush() {
+        for (final Entry entry : entries) {
+            final CharSequence content = entry.content == null ? null : prefix + entry.content;
+            switch (entry.level) {
+                case DEBUG:
+                    delegate.debug(content, entry.error);
+                    break;
+                case INFO:
+                    delegate.info(content, entry.error);
+                    break;
+                case WARN:
+                    delegate.warn(content, entry.error);
+                    break;
+                case ERROR:
+                default:
+                    delegate.error(content, entry.error);
+                    break;
+            }
+        }
+        entries.clear();
+    }
+
+    private synchronized void add(final Level level, final CharSequence content, final Throwable error) {
+        entries.add(new Entry(level, content, error));
+    }
+
+    public boolean isDebugEnabled() {
+        return delegate.isDebugEnabled();
+    }
+
+    public void debug(final CharSequence content) {
+        if (isDebugEnabled()) {
+            add(Level.DEBUG, content, null);
+        }
+    }
+
+    public void debug(final CharSequence content, final Throwable error) {
+        if (isDebugEnabled()) {
+            add(Level.DEBUG, content, error);
+        }
+    }
+
+    public void debug(final Throwable error) {
+        if (isDebugEnabled()) {
+            add(Level.DEBUG, null, error);
+        }
+    }
+
+    public boolean isInfoEnabled() {
+        return delegate.isInfoEnabled();
+    }
+
+    public void info(final CharSequence content) {
+        add(Level.INFO, content, null);
+    }
+
+    public void info(final CharSequence content, final Throwable error) {
+        add(Level.INFO, content, error);
+    }
+
+    public void info(final Throwable error) {
+        add(Level.INFO, null, error);
+    }
+
+    public boolean isWarnEnabled() {
+        return delegate.isWarnEnabled();
+    }
+
+    public void warn(final CharSequence content) {
+        add(Level.WARN, content, null);
+    }
+
+    public void warn(final CharSequence content, final Throwable error) {
+        add(Level.WARN, content, error);
+    }
+
+    public void warn(final Throwable error) {
+        add(Level.WARN, null, error);
+    }
+
+    public boolean isErrorEnabled() {
+        return delegate.isErrorEnabled();
+    }
+
+    public void error(final CharSequence content) {
+        add(Level.ERROR, content, null);
+    }
+
+    public void error(final CharSequence content, final Throwable error) {
+        add(Level.ERROR, content, error);
+    }
+
+    public void error(final Throwable error) {
+        add(Level.ERROR, null, error);
+    }
+
+    private static class Entry {
+
+        private final Level level;
+
+        private final CharSequence content;
+
+        private final Throwable error;
+
+        private Entry(final Level level, final CharSequence content, final Throwable error) {
+            this.level = level;
+            this.content = content;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,590 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.header.OSGiHeader;
+import aQute.bnd.header.Parameters;
+import aQute.bnd.osgi.Constants;
+import aQute.bnd.osgi.EmbeddedResource;
+import aQute.bnd.osgi.Jar;
+import aQute.bnd.osgi.Resource;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Read-only view of a bundle's JAR file, which only reads the parts needed for baselining.
+ *
+ * The ZIP central directory is read once and the manifest is parsed once. Entries are only
+ * read when accessed. Unlike {@link Jar#Jar(File)}, the {@link Jar} created by
+ * {@link #createApiJar(Set)} does not contain all resources of the bundle, but only the
+ * class files of its exported packages. All other classes of the bundle, including those
+ * of embedded JARs, are only read if bnd needs them to resolve inherited members.
+ *
+ * The archive keeps its file open until {@link #close()} is invoked, which releases all
+ * resources held by the archive. The {@link Jar}s created from it must not be used after.
+ */
+public class BundleArchive implements Closeable {
+
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int END_LENGTH = 22;
+
+    private static final int MAX_COMMENT_LENGTH = 0xffff;
+
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int ZIP64_LOCATOR_LENGTH = 20;
+
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+
+    private static final int ZIP64_END_LENGTH = 56;
+
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+    private static final int CENTRAL_LENGTH = 46;
+
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+    private static final int LOCAL_LENGTH = 30;
+
+    private static final int STORED = 0;
+
+    private static final int DEFLATED = 8;
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final File file;
+
+    private final RandomAccessFile randomAccessFile;
+
+    private final FileChannel channel;
+
+    private final SortedMap<String, Entry> entries;
+
+    private final Log log;
+
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    private Manifest manifest;
+
+    private boolean manifestRead;
+
+    // whether all exported packages contain classes, computed once as it scans all entries
+    private volatile Boolean exportedClassesContained;
+
+    private BundleArchive(final File file, final RandomAccessFile randomAccessFile, final SortedMap<String, Entry> entries,
+                          final Log log) {
+        this.file = file;
+        this.randomAccessFile = randomAccessFile;
+        this.channel = randomAccessFile.getChannel();
+        this.entries = entries;
+        this.log = log;
+    }
+
+    /**
+     * @param log the log to warn about embedded JARs that cannot be read
+     */
+    public static BundleArchive open(final File file, final Log log) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final SortedMap<String, Entry> entries = readCentralDirectory(randomAccessFile.getChannel());
+            return new BundleArchive(file, randomAccessFile, entries, log);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        } catch (RuntimeException e) {
+            randomAccessFile.close();
+            final ZipException zipException = new ZipException("The JAR file " + file + " seems corrupted: " + e);
+            zipException.initCause(e);
+            throw zipException;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of bytes of entry data read from the file so far
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * @return the names of all file entries, in alphabetical order
+     */
+    public Set<String> getEntryNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    public InputStream openEntry(final String name) throws IOException {
+        final Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new IOException("No entry " + name + " in " + file);
+        }
+        return new ByteArrayInputStream(read(entry));
+    }
+
+    /**
+     * @return the bundle's manifest, or {@code null} if it has none
+     */
+    public synchronized Manifest getManifest() throws IOException {
+        if (!manifestRead) {
+            manifestRead = true;
+            if (entries.containsKey(JarFile.MANIFEST_NAME)) {
+                final InputStream in = openEntry(JarFile.MANIFEST_NAME);
+                try {
+                    manifest = new Manifest(in);
+                } finally {
+                    in.close();
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Creates a {@link Jar} with the bundle's manifest and the class files of the given
+     * exported packages. The JAR is only valid while this archive is open.
+     *
+     * If the bundle's API cannot be determined from the exported classes alone, e.g.
+     * because exported packages are embedded on the {@code Bundle-ClassPath} or because
+     * the manifest is not an OSGi R4 manifest, the JAR contains all entries of the bundle.
+     *
+     * @param packages the exported packages to include, or {@code null} for all exported packages
+     */
+    public Jar createApiJar(final Set<String> packages) throws IOException {
+        final Jar jar = new Jar(getName());
+        final Manifest manifest = getManifest();
+        final Set<String> exported = getExportedPackages();
+        if (manifest == null || manifest.getMainAttributes().getValue(Constants.BUNDLE_MANIFESTVERSION) == null
+                || !containsExportedClasses(exported)) {
+            for (final Entry entry : entries.values()) {
+                jar.putResource(entry.name, new EntryResource(entry));
+            }
+        } else {
+            // only visits the entries of the requested packages, baselining package by package
+            // would otherwise visit all entries for every package
+            for (final String packageName : exported) {
+                if (packages != null && !packages.contains(packageName)) {
+                    continue;
+                }
+                for (final Entry entry : getPackageEntries(packageName).values()) {
+                    if (entry.name.endsWith(CLASS_SUFFIX) && packageName.equals(getPackageName(entry.name))) {
+                        jar.putResource(entry.name, new EntryResource(entry));
+                    }
+                }
+            }
+        }
+        if (manifest != null) {
+            jar.setManifest(packages == null ? manifest : restrictExports(manifest, packages));
+        }
+        return jar;
+    }
+
+    /**
+     * Creates {@link Jar}s with all classes not contained in the given JAR created by
+     * {@link #createApiJar(Set)}, to be put on bnd's classpath. The classes are only read
+     * if bnd looks them up, embedded JARs are only read on the first lookup.
+     */
+    public List<Jar> createClasspath(final Jar apiJar) throws IOException {
+        final List<Jar> classpath = new ArrayList<Jar>();
+        classpath.add(new ArchiveClasses(getName() + "-classes", apiJar));
+
+        final Manifest manifest = getManifest();
+        final String bundleClassPath = manifest == null
+                ? null
+                : manifest.getMainAttributes().getValue(Constants.BUNDLE_CLASSPATH);
+        if (bundleClassPath != null) {
+            for (final String path : OSGiHeader.parseHeader(bundleClassPath).keySet()) {
+                final Entry entry = entries.get(path);
+                if (entry != null && apiJar.getResource(path) == null) {
+                    classpath.add(new EmbeddedJar(path, new EntryResource(entry), log));
+                }
+            }
+        }
+        return classpath;
+    }
+
+    /**
+     * Returns a copy of the manifest exporting only the given packages. bnd only computes
+     * the API of exported packages.
+     */
+    private static Manifest restrictExports(final Manifest manifest, final Set<String> packages) {
+        final Manifest restricted = new Manifest(manifest);
+        final Parameters exports = OSGiHeader.parseHeader(restricted.getMainAttributes().getValue(Constants.EXPORT_PACKAGE));
+        exports.keySet().retainAll(packages);
+        restricted.getMainAttributes().putValue(Constants.EXPORT_PACKAGE, exports.toString());
+        return restricted;
+    }
+
+    /**
+     * @return the packages exported by the bundle, empty if it has no manifest
+     */
+    public Set<String> getExportedPackages() throws IOException {
+        final Manifest manifest = getManifest();
+        final String exportPackage = manifest == null
+                ? null
+                : manifest.getMainAttributes().getValue(Constants.EXPORT_PACKAGE);
+        final Parameters exports = exportPackage == null ? new Parameters() : OSGiHeader.parseHeader(exportPackage);
+        return new HashSet<String>(exports.keySet());
+    }
+
+    public void close() throws IOException {
+        randomAccessFile.close();
+    }
+
+    static String getPackageName(final String entryName) {
+        final int lastSlash = entryName.lastIndexOf('/');
+        return lastSlash < 0 ? "" : entryName.substring(0, lastSlash).replace('/', '.');
+    }
+
+    private boolean containsExportedClasses(final Set<String> exported) {
+        Boolean contained = exportedClassesContained;
+        if (contained == null) {
+            final Set<String> missing = new HashSet<String>(exported);
+            for (final String name : entries.keySet()) {
+                if (name.endsWith(CLASS_SUFFIX)) {
+                    missing.remove(getPackageName(name));
+                }
+            }
+            contained = missing.isEmpty();
+            exportedClassesContained = contained;
+        }
+        return contained;
+    }
+
+    /**
+     * @return the entries of the given package and its sub-packages
+     */
+    private SortedMap<String, Entry> getPackageEntries(final String packageName) {
+        if (packageName.length() == 0) {
+            return entries;
+        }
+        final String prefix = packageName.replace('.', '/') + '/';
+        return entries.subMap(prefix, prefix + '\uffff');
+    }
+
+    private String getName() {
+        final String name = file.getName();
+        return name.endsWith(".jar") ? name.substring(0, name.length() - 4) : name;
+    }
+
+    private byte[] read(final Entry entry) throws IOException {
+        final ByteBuffer localHeader = readFully(entry.localHeaderOffset, LOCAL_LENGTH);
+        if (localHeader.getInt(0) != LOCAL_SIGNATURE) {
+            throw new ZipException("Invalid local header for " + entry.name + " in " + file);
+        }
+        final long dataOffset = entry.localHeaderOffset + LOCAL_LENGTH
+                + (localHeader.getShort(26) & 0xffff) + (localHeader.getShort(28) & 0xffff);
+
+        if (entry.size >= Integer.MAX_VALUE || entry.compressedSize >= Integer.MAX_VALUE) {
+            throw new ZipException("Entry " + entry.name + " in " + file + " is too large");
+        }
+        if (entry.method == STORED) {
+            return readFully(dataOffset, (int) entry.size).array();
+        }
+        if (entry.method != DEFLATED) {
+            throw new ZipException("Unsupported compression method " + entry.method + " for " + entry.name + " in " + file);
+        }
+        // the inflater requires an extra dummy byte in "nowrap" mode
+        final byte[] compressed = new byte[(int) entry.compressedSize + 1];
+        readFully(dataOffset, ByteBuffer.wrap(compressed, 0, (int) entry.compressedSize));
+        final byte[] data = new byte[(int) entry.size];
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            int offset = 0;
+            while (offset < data.length && !inflater.finished()) {
+                final int inflated = inflater.inflate(data, offset, data.length - offset);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EOFException("Unexpected end of " + entry.name + " in " + file);
+                }
+                offset += inflated;
+            }
+            return data;
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid compressed data for " + entry.name + " in " + file + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private ByteBuffer readFully(final long position, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(position, buffer);
+        return buffer;
+    }
+
+    private void readFully(final long position, final ByteBuffer buffer) throws IOException {
+        bytesRead.addAndGet(buffer.remaining());
+        readFully(channel, position, buffer);
+    }
+
+    private static void readFully(final FileChannel channel, final long position, final ByteBuffer buffer) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            current += read;
+        }
+    }
+
+    private static SortedMap<String, Entry> readCentralDirectory(final FileChannel channel) throws IOException {
+        final long fileSize = channel.size();
+        final int tailLength = (int) Math.min(fileSize, END_LENGTH + MAX_COMMENT_LENGTH);
+        final long tailOffset = fileSize - tailLength;
+        final ByteBuffer tail = ByteBuffer.allocate(tailLength).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, tailOffset, tail);
+
+        int end = tailLength - END_LENGTH;
+        while (end >= 0 && tail.getInt(end) != END_SIGNATURE) {
+            end--;
+        }
+        if (end < 0) {
+            throw new ZipException("No ZIP end of central directory record found");
+        }
+        long size = tail.getInt(end + 12) & 0xffffffffL;
+        long offset = tail.getInt(end + 16) & 0xffffffffL;
+
+        // archives with more than 65535 entries or beyond 4 GB have a ZIP64 end record
+        final long locatorOffset = tailOffset + end - ZIP64_LOCATOR_LENGTH;
+        if (locatorOffset >= 0) {
+            final ByteBuffer locator = ByteBuffer.allocate(ZIP64_LOCATOR_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, locatorOffset, locator);
+            if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                final ByteBuffer zip64End = ByteBuffer.allocate(ZIP64_END_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, locator.getLong(8), zip64End);
+                if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+                    throw new ZipException("Invalid ZIP64 end of central directory record");
+                }
+                size = zip64End.getLong(40);
+                offset = zip64End.getLong(48);
+            }
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new ZipException("ZIP central directory of " + size + " bytes is too large");
+        }
+
+        // read rather than mapped: a mapping outlives close() until it is garbage collected,
+        // keeping the file open, and locked on Windows, in long-lived build daemons
+        final ByteBuffer directory = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, offset, directory);
+        final SortedMap<String, Entry> entries = new TreeMap<String, Entry>();
+        // the directory's size rather than its 16 bit entry count delimits the entries
+        int position = 0;
+        while (position < size) {
+            if (directory.getInt(position) != CENTRAL_SIGNATURE) {
+                throw new ZipException("Invalid central directory entry");
+            }
+            final int method = directory.getShort(position + 10) & 0xffff;
+            long compressedSize = directory.getInt(position + 20) & 0xffffffffL;
+            long uncompressedSize = directory.getInt(position + 24) & 0xffffffffL;
+            final int nameLength = directory.getShort(position + 28) & 0xffff;
+            final int extraLength = directory.getShort(position + 30) & 0xffff;
+            final int commentLength = directory.getShort(position + 32) & 0xffff;
+            long localHeaderOffset = directory.getInt(position + 42) & 0xffffffffL;
+
+            // absolute reads, ByteBuffer.position(int) does not exist in Java 6
+            final byte[] nameBytes = new byte[nameLength];
+            for (int i = 0; i < nameLength; i++) {
+                nameBytes[i] = directory.get(position + CENTRAL_LENGTH + i);
+            }
+            final String name = toString(nameBytes);
+
+            // ZIP64 extra fields only contain the values that do not fit in 32 bits, in this order
+            int extra = position + CENTRAL_LENGTH + nameLength;
+            final int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                final int id = directory.getShort(extra) & 0xffff;
+                final int length = directory.getShort(extra + 2) & 0xffff;
+                if (id == ZIP64_EXTRA_ID) {
+                    int field = extra + 4;
+                    if (uncompressedSize == 0xffffffffL) {
+                        uncompressedSize = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == 0xffffffffL) {
+                        compressedSize = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == 0xffffffffL) {
+                        localHeaderOffset = directory.getLong(field);
+                    }
+                    break;
+                }
+                extra += 4 + length;
+            }
+
+            if (!name.endsWith("/")) {
+                entries.put(name, new Entry(name, method, compressedSize, uncompressedSize, localHeaderOffset));
+            }
+            position = extraEnd + commentLength;
+        }
+        return entries;
+    }
+
+    private static String toString(final byte[] bytes) {
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Entry {
+
+        private final String name;
+
+        private final int method;
+
+        private final long compressedSize;
+
+        private final long size;
+
+        private final long localHeaderOffset;
+
+        private Entry(final String name, final int method, final long compressedSize, final long size,
+                      final long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+
+    /**
+     * A bnd resource reading an entry of the archive on demand.
+     */
+    private class EntryResource implements Resource {
+
+        private final Entry entry;
+
+        private String extra;
+
+        private EntryResource(final Entry entry) {
+            this.entry = entry;
+        }
+
+        public InputStream openInputStream() throws IOException {
+            return new ByteArrayInputStream(read(entry));
+        }
+
+        public void write(final OutputStream out) throws IOException {
+            out.write(read(entry));
+        }
+
+        public long lastModified() {
+            return file.lastModified();
+        }
+
+        public void setExtra(final String extra) {
+            this.extra = extra;
+        }
+
+        public String getExtra() {
+            return extra;
+        }
+
+        public long size() {
+            return entry.size;
+        }
+
+        @Override
+        public String toString() {
+            return ":" + file + "(" + entry.name + "):";
+        }
+    }
+
+    /**
+     * The archive's classes not contained in an API JAR, looked up in the archive's entries
+     * rather than copied, as creating the classpath for every package would otherwise visit
+     * all entries every time.
+     */
+    private class ArchiveClasses extends Jar {
+
+        private final Jar apiJar;
+
+        private ArchiveClasses(final String name, final Jar apiJar) {
+            super(name);
+            this.apiJar = apiJar;
+        }
+
+        @Override
+        public Resource getResource(final String path) {
+            final Entry entry = entries.get(path);
+            if (entry == null || !path.endsWith(CLASS_SUFFIX) || apiJar.getResource(path) != null) {
+                return null;
+            }
+            return new EntryResource(entry);
+        }
+    }
+
+    /**
+     * A JAR embedded on the {@code Bundle-ClassPath}, which is only read on the first
+     * lookup of a class that is not part of the JDK.
+     */
+    private static class EmbeddedJar extends Jar {
+
+        private final Resource resource;
+
+        private final Log log;
+
+        private boolean loaded;
+
+        private EmbeddedJar(final String name, final Resource resource, final Log log) {
+            super(name);
+            this.resource = resource;
+            this.log = log;
+        }
+
+        @Override
+        public Resource getResource(final String path) {
+            if (!path.startsWith("java/")) {
+                load();
+            }
+            return super.getResource(path);
+        }
+
+        private synchronized void load() {
+            if (!loaded) {
+                loaded = true;
+                try {
+                    EmbeddedResource.build(this, resource);
+                } catch (Exception e) {
+                    // bnd reports classes that cannot be loaded in the API tree
+                    log.warn("Failed to read the embedded JAR " + getName() + ", its classes are missing from the API: " + e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package net.distilledcode.maven.baselining;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Helpers for files in the baselining cache directory, which may be shared by
+ * concurrent builds.
+ */
+class CacheFiles {
+
+    private CacheFiles() {
+    }
+
+    /**
+     * Writes the content to a temporary file first and then renames it to the target file,
+     * so concurrent readers never see partially written files.
+     */
+    static void write(final File file, final byte[] content) throws IOException {
+        final File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+
+        final File tmpFile = File.createTempFile(file.getName(), ".tmp", parent);
+        try {
+            final OutputStream out = new FileOutputStream(tmpFile);
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+            if (!tmpFile.renameTo(file)) {
+                // the rename fails on some platforms if the target exists
+                if (!file.delete() || !tmpFile.renameTo(file)) {
+                    throw new IOException("Could not rename " + tmpFile + " to " + file);
+                }
+            }
+        } finally {
+            if (tmpFile.exists() && !tmpFile.delete()) {
+                tmpFile.deleteOnExit();
+            }
+        }
+    }
+}
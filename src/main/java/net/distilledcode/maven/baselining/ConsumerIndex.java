@@ -0,0 +1,208 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.header.Attrs;
+import aQute.bnd.header.OSGiHeader;
+import aQute.bnd.osgi.Constants;
+import aQute.bnd.osgi.Processor;
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.version.Version;
+import aQute.bnd.version.VersionRange;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.Manifest;
+
+/**
+ * Index of the packages imported by the bundles of a reactor build, used to determine
+ * which modules are affected by the API changes of another module's exported packages.
+ *
+ * A module is affected by a changed package if it imports the package with a version
+ * range that does not include the package's new export version, i.e. its suggested
+ * version if the package's version needs to be raised. Such modules need to be rebuilt or
+ * their import ranges adjusted, all other modules keep resolving against the new bundle.
+ */
+class ConsumerIndex {
+
+    static final String FILE_NAME = "baselining-impact.txt";
+
+    private static final String DEFAULT_RANGE = "0.0.0";
+
+    private final Map<String, List<Import>> imports = new HashMap<String, List<Import>>();
+
+    /**
+     * Adds the imports of the given module's bundle to the index.
+     *
+     * @param module the module's {@code groupId:artifactId}
+     * @param log the log to warn about embedded JARs that cannot be read
+     */
+    void addConsumer(final String module, final File bundle, final Log log) throws IOException {
+        final BundleArchive archive = BundleArchive.open(bundle, log);
+        try {
+            final Manifest manifest = archive.getManifest();
+            if (manifest != null) {
+                addConsumer(module, manifest);
+            }
+        } finally {
+            archive.close();
+        }
+    }
+
+    void addConsumer(final String module, final Manifest manifest) {
+        final String importPackage = manifest.getMainAttributes().getValue(Constants.IMPORT_PACKAGE);
+        if (importPackage == null) {
+            return;
+        }
+        for (final Map.Entry<String, Attrs> entry : OSGiHeader.parseHeader(importPackage).entrySet()) {
+            final String packageName = Processor.removeDuplicateMarker(entry.getKey());
+            final String range = entry.getValue().getVersion();
+            List<Import> packageImports = imports.get(packageName);
+            if (packageImports == null) {
+                packageImports = new ArrayList<Import>();
+                imports.put(packageName, packageImports);
+            }
+            packageImports.add(new Import(module, packageName, range == null ? DEFAULT_RANGE : range));
+        }
+    }
+
+    /**
+     * Returns the imports of the exporter's changed packages whose ranges do not include the
+     * packages' new export versions. Imports by the exporter itself are ignored.
+     *
+     * @param exporter the exporting module's {@code groupId:artifactId}
+     */
+    List<Impact> getImpacts(final String exporter, final Collection<PackageResult> packageResults) {
+        final List<Impact> impacts = new ArrayList<Impact>();
+        for (final PackageResult packageResult : packageResults) {
+            final List<Import> packageImports = imports.get(packageResult.getPackageName());
+            if (packageImports == null || !isChanged(packageResult)) {
+                continue;
+            }
+            final Version exportVersion = getExportVersion(packageResult);
+            for (final Import packageImport : packageImports) {
+                if (!packageImport.module.equals(exporter) && !packageImport.includes(exportVersion)) {
+                    impacts.add(new Impact(packageImport, exporter, exportVersion));
+                }
+            }
+        }
+        return impacts;
+    }
+
+    private static boolean isChanged(final PackageResult packageResult) {
+        return packageResult.getDelta() != Delta.UNCHANGED
+                || !packageResult.getNewerVersion().equals(packageResult.getOlderVersion());
+    }
+
+    /**
+     * @return the version the package needs to be exported with, the higher of its current
+     *         and its suggested version, or {@code null} if it was removed
+     */
+    static Version getExportVersion(final PackageResult packageResult) {
+        final Version suggested = packageResult.getSuggestedVersion();
+        if (suggested == null) {
+            return null;
+        }
+        final Version newer = packageResult.getNewerVersion();
+        return newer != null && newer.compareTo(suggested) > 0 ? newer : suggested;
+    }
+
+    /**
+     * Writes the affected modules' {@code groupId:artifactId}, one per line and without
+     * duplicates, e.g. to be passed to Maven's {@code --projects} option.
+     */
+    static void write(final File file, final List<Impact> impacts) throws IOException {
+        final Set<String> modules = new TreeSet<String>();
+        for (final Impact impact : impacts) {
+            modules.add(impact.getModule());
+        }
+        file.getParentFile().mkdirs();
+        final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            for (final String module : modules) {
+                out.write(module);
+                out.write("\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static class Import {
+
+        private final String module;
+
+        private final String packageName;
+
+        private final String range;
+
+        private Import(final String module, final String packageName, final String range) {
+            this.module = module;
+            this.packageName = packageName;
+            this.range = range;
+        }
+
+        private boolean includes(final Version version) {
+            if (version == null) {
+                return false;
+            }
+            try {
+                return new VersionRange(range).includes(version);
+            } catch (IllegalArgumentException e) {
+                // an unparsable range cannot be relied upon
+                return false;
+            }
+        }
+    }
+
+    /**
+     * An import of a changed package with a range excluding the package's new export version.
+     */
+    static class Impact {
+
+        private final Import packageImport;
+
+        private final String exporter;
+
+        private final Version exportVersion;
+
+        private Impact(final Import packageImport, final String exporter, final Version exportVersion) {
+            this.packageImport = packageImport;
+            this.exporter = exporter;
+            this.exportVersion = exportVersion;
+        }
+
+        String getModule() {
+            return packageImport.module;
+        }
+
+        String getPackageName() {
+            return packageImport.packageName;
+        }
+
+        String getRange() {
+            return packageImport.range;
+        }
+
+        String getExporter() {
+            return exporter;
+        }
+
+        /**
+         * @return the package's new export version, {@code null} if it was removed
+         */
+        Version getExportVersion() {
+            return exportVersion;
+        }
+    }
+}
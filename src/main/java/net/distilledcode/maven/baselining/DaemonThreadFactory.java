@@ -0,0 +1,28 @@
+package net.distilledcode.maven.baselining;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates numbered daemon threads, which do not keep the JVM alive once the build is done,
+ * e.g. for background work whose result may never be needed.
+ */
+class DaemonThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    private final String prefix;
+
+    /**
+     * @param prefix the prefix of the threads' names, e.g. {@code baselining-prefetch}
+     */
+    DaemonThreadFactory(final String prefix) {
+        this.prefix = prefix;
+    }
+
+    public Thread newThread(final Runnable runnable) {
+        final Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
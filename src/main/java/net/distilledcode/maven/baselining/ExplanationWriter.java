@@ -0,0 +1,268 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.service.diff.Diff;
+import aQute.bnd.service.diff.Type;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes an explanation of each added or removed element of a package diff, one line
+ * per finding.
+ *
+ * The diff tree is traversed iteratively. The part of a line contributed by an element's
+ * ancestors is kept in a buffer that grows and shrinks along the traversal, so that it is
+ * not rebuilt for each finding. At most {@code limit} findings are written, further
+ * findings are only counted.
+ */
+class ExplanationWriter {
+
+    private final Log log;
+
+    private final int limit;
+
+    private final StringBuilder path = new StringBuilder();
+
+    private final StringBuilder line = new StringBuilder();
+
+    private final List<Frame> frames = new ArrayList<Frame>();
+
+    private int written;
+
+    private int omitted;
+
+    /**
+     * @param limit the maximum number of findings to write, {@code 0} or less for no limit
+     */
+    ExplanationWriter(final Log log, final int limit) {
+        this.log = log;
+        this.limit = limit;
+    }
+
+    /**
+     * Writes the findings of the given package diff.
+     */
+    void explain(final Diff packageDiff) {
+        final String packageName = packageDiff.getName();
+        path.setLength(0);
+        frames.clear();
+        if (!visit(packageDiff, packageName)) {
+            return;
+        }
+        while (!frames.isEmpty()) {
+            final Frame frame = frames.get(frames.size() - 1);
+            if (frame.children.hasNext()) {
+                visit(frame.children.next(), packageName);
+            } else {
+                frames.remove(frames.size() - 1);
+                path.setLength(frame.pathLength);
+            }
+        }
+    }
+
+    /**
+     * Writes a summary of the omitted findings, if any.
+     */
+    void finish() {
+        if (omitted > 0) {
+            log.info("... and " + omitted + " more findings (limited to " + limit + " via \"baselining.baseline.explainLimit\")");
+        }
+    }
+
+    /**
+     * Writes the finding for an added or removed element, or pushes a changed element
+     * in order to visit its children.
+     *
+     * @return {@code true} if the element was pushed
+     */
+    private boolean visit(final Diff diff, final String packageName) {
+        switch (diff.getDelta()) {
+            case ADDED:
+            case REMOVED:
+                if (diff.getType() != Type.VERSION) {
+                    if (limit > 0 && written >= limit) {
+                        omitted++;
+                    } else {
+                        written++;
+                        write(diff, packageName);
+                    }
+                }
+                return false;
+            case CHANGED:
+            case MAJOR:
+            case MINOR:
+            case MICRO:
+                final int pathLength = path.length();
+                if (!isInsertion(diff.getType())) {
+                    appendElement(path, diff, packageName);
+                }
+                frames.add(new Frame(diff, pathLength));
+                return true;
+            case UNCHANGED:
+            default:
+                return false;
+        }
+    }
+
+    private void write(final Diff diff, final String packageName) {
+        final boolean added = diff.getDelta() == Delta.ADDED;
+        final Delta severity = added ? diff.getNewer().ifAdded() : diff.getOlder().ifRemoved();
+        final String description = diff.getType().toString().toLowerCase();
+
+        line.setLength(0);
+        line.append(severity.toString().toLowerCase(Locale.US)).append(": ").append(added ? "  added " : "removed ");
+        final int start = line.length();
+        line.append(description).append(' ');
+        if (hasInsertingAncestor()) {
+            // rare: an ancestor modifies the beginning of the line, which depends on the finding's type
+            for (final Frame frame : frames) {
+                appendElement(line, frame.diff, packageName, false, start, description);
+            }
+        } else {
+            line.append(path);
+        }
+        appendElement(line, diff, packageName, frames.isEmpty(), start, description);
+        log.info(line.toString());
+    }
+
+    private boolean hasInsertingAncestor() {
+        for (final Frame frame : frames) {
+            if (isInsertion(frame.diff.getType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Element types that modify the beginning of a line rather than appending to it.
+     */
+    private static boolean isInsertion(final Type type) {
+        switch (type) {
+            case EXTENDS:
+            case IMPLEMENTS:
+            case PROPERTY:
+            case RETURN:
+            case ACCESS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Appends the part contributed by an element that does not modify the beginning of a line.
+     */
+    private static void appendElement(final StringBuilder sb, final Diff diff, final String packageName) {
+        appendElement(sb, diff, packageName, false, -1, null);
+    }
+
+    /**
+     * Applies the part contributed by an element to the line in {@code sb}, where the finding's
+     * description starts at {@code start}.
+     *
+     * @param single whether the element is the only element of the line, i.e. a whole package was added or removed
+     */
+    private static void appendElement(final StringBuilder sb, final Diff diff, final String packageName,
+                                      final boolean single, final int start, final String description) {
+        final String name = diff.getName();
+        switch (diff.getType()) {
+            case EXTENDS:
+            case IMPLEMENTS:
+                sb.replace(start, start + description.length(), "inheritance");
+                sb.append(' ').append(description).append(' ');
+                appendAbbreviatedClassName(sb, name, packageName);
+                break;
+            case CLASS:
+            case ENUM:
+            case INTERFACE:
+                appendAbbreviatedClassName(sb, name, packageName);
+                break;
+            case CONSTANT:
+            case FIELD:
+                sb.append('#').append(name);
+                break;
+            case METHOD:
+                sb.append('#');
+                appendAbbreviatedMethod(sb, name, packageName);
+                break;
+            case ANNOTATED:
+                sb.append(" with ").append(name);
+                break;
+            case PROPERTY:
+                sb.insert(start, "annotation-");
+                sb.append('(').append(name).append(')');
+                break;
+            case VERSION:
+                break;
+            case RETURN:
+                sb.insert(start + description.length() + 1, abbreviateClassName(name, packageName) + " from ");
+                break;
+            case ACCESS:
+                sb.insert(start + description.length(), name + " of");
+                break;
+            case PACKAGE:
+                if (single) {
+                    sb.append(name);
+                }
+                break;
+            case ANNOTATION:
+            default:
+                sb.append(" *** ").append(name);
+                break;
+        }
+    }
+
+    private static void appendAbbreviatedMethod(final StringBuilder sb, final String methodSignature, final String packageName) {
+        final int open = methodSignature.indexOf('(');
+        final int close = methodSignature.indexOf(')');
+        sb.append(methodSignature, 0, open + 1);
+        int argumentStart = open + 1;
+        while (argumentStart <= close) {
+            int argumentEnd = methodSignature.indexOf(',', argumentStart);
+            if (argumentEnd < 0 || argumentEnd > close) {
+                argumentEnd = close;
+            }
+            appendAbbreviatedClassName(sb, methodSignature.substring(argumentStart, argumentEnd), packageName);
+            if (argumentEnd < close) {
+                sb.append(',');
+            }
+            argumentStart = argumentEnd + 1;
+        }
+        sb.append(methodSignature, close, methodSignature.length());
+    }
+
+    private static void appendAbbreviatedClassName(final StringBuilder sb, final String className, final String packageName) {
+        if (className.startsWith(packageName)) {
+            sb.append(className, packageName.length() + 1, className.length());
+        } else {
+            sb.append(className);
+        }
+    }
+
+    private static String abbreviateClassName(final String className, final String packageName) {
+        final StringBuilder sb = new StringBuilder();
+        appendAbbreviatedClassName(sb, className, packageName);
+        return sb.toString();
+    }
+
+    private static class Frame {
+
+        private final Diff diff;
+
+        private final Iterator<? extends Diff> children;
+
+        private final int pathLength;
+
+        private Frame(final Diff diff, final int pathLength) {
+            this.diff = diff;
+            this.children = diff.getChildren().iterator();
+            this.pathLength = pathLength;
+        }
+    }
+}
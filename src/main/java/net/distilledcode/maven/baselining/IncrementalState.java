@@ -0,0 +1,264 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.header.Attrs;
+import aQute.bnd.header.Parameters;
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.version.Version;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The state of the last baselining run of a module, which allows subsequent runs to
+ * only diff the exported packages that changed in the meantime.
+ *
+ * The state records the baseline artifact, the digests of the bundle's packages and the
+ * results of all packages. A package needs to be diffed again if its class files or its
+ * export version changed, or if it {@code uses} a package that needs to be diffed again.
+ * If any class in a non-exported package changed, all packages need to be diffed again,
+ * because exported classes may inherit members from non-exported classes.
+ */
+class IncrementalState {
+
+    static final String FILE_NAME = "baselining-state.properties";
+
+    private static final String FORMAT_VERSION = "1";
+
+    private static final String FORMAT = "format";
+
+    private static final String BASELINE = "baseline";
+
+    private static final String PRIVATE_DIGEST = "private";
+
+    private static final String BUNDLE_OLDER = "bundle.older";
+
+    private static final String BUNDLE_NEWER = "bundle.newer";
+
+    private static final String BUNDLE_SUGGESTED = "bundle.suggested";
+
+    private static final String PACKAGE_PREFIX = "package.";
+
+    private static final String DIGEST = ".digest";
+
+    private static final String DELTA = ".delta";
+
+    private static final String OLDER = ".older";
+
+    private static final String NEWER = ".newer";
+
+    private static final String SUGGESTED = ".suggested";
+
+    private final String baselineKey;
+
+    private final String privateDigest;
+
+    private final Map<String, String> packageDigests;
+
+    private final BaselineResult result;
+
+    IncrementalState(final String baselineKey, final PackageDigests digests, final BaselineResult result) {
+        this(baselineKey, digests.getPrivateDigest(), getExportedDigests(digests), result);
+    }
+
+    private IncrementalState(final String baselineKey, final String privateDigest,
+                             final Map<String, String> packageDigests, final BaselineResult result) {
+        this.baselineKey = baselineKey;
+        this.privateDigest = privateDigest;
+        this.packageDigests = packageDigests;
+        this.result = result;
+    }
+
+    /**
+     * Identifies a baseline artifact. Released artifacts don't change, the file's size and
+     * modification time guard against re-downloaded or locally re-installed artifacts.
+     */
+    static String getBaselineKey(final Artifact baselineArtifact) {
+        final File file = baselineArtifact.getFile();
+        return baselineArtifact.getId() + ":" + file.length() + ":" + file.lastModified();
+    }
+
+    /**
+     * Returns the exported packages that need to be diffed again, or {@code null} if all
+     * packages need to be diffed, e.g. because a different baseline is used.
+     */
+    Set<String> getDirtyPackages(final String currentBaselineKey, final PackageDigests current) {
+        if (!baselineKey.equals(currentBaselineKey) || !privateDigest.equals(current.getPrivateDigest())) {
+            return null;
+        }
+
+        final Parameters exports = current.getExports();
+        final Set<String> dirty = new TreeSet<String>();
+        for (final Map.Entry<String, Attrs> export : exports.entrySet()) {
+            final String packageName = export.getKey();
+            final PackageResult packageResult = result.getPackage(packageName);
+            final String digest = current.getDigests().get(packageName);
+            if (packageResult == null
+                    || digest == null || !digest.equals(packageDigests.get(packageName))
+                    || !Version.parseVersion(export.getValue().getVersion()).equals(packageResult.getNewerVersion())) {
+                dirty.add(packageName);
+            }
+        }
+        for (final String packageName : packageDigests.keySet()) {
+            if (!exports.containsKey(packageName)) {
+                dirty.add(packageName); // no longer exported
+            }
+        }
+
+        // packages using a dirty package may expose changed types, e.g. by inheritance
+        boolean changed = !dirty.isEmpty();
+        while (changed) {
+            changed = false;
+            for (final Map.Entry<String, Attrs> export : exports.entrySet()) {
+                if (!dirty.contains(export.getKey()) && usesAny(export.getValue(), dirty)) {
+                    dirty.add(export.getKey());
+                    changed = true;
+                }
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * Combines the results of the previous run with the results of the packages that were
+     * diffed again.
+     *
+     * @param dirty the packages that were diffed again
+     * @param partial the results of diffing the dirty packages, may be {@code null} if none were dirty
+     * @param newerVersion the current bundle version
+     */
+    BaselineResult merge(final Set<String> dirty, final BaselineResult partial, final Version newerVersion) {
+        final List<PackageResult> packageResults = new ArrayList<PackageResult>();
+        for (final PackageResult packageResult : result.getPackages()) {
+            if (!dirty.contains(packageResult.getPackageName())) {
+                packageResults.add(packageResult);
+            }
+        }
+        if (partial != null) {
+            packageResults.addAll(partial.getPackages());
+        }
+        final Version olderVersion = result.getOlderVersion();
+        return new BaselineResult(packageResults, olderVersion, newerVersion,
+                BaselineResult.suggestBundleVersion(packageResults, olderVersion));
+    }
+
+    static IncrementalState load(final File file, final Log log) {
+        if (!file.isFile()) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        try {
+            final InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            if (!FORMAT_VERSION.equals(properties.getProperty(FORMAT))) {
+                return null;
+            }
+
+            final Map<String, String> packageDigests = new HashMap<String, String>();
+            final List<PackageResult> packageResults = new ArrayList<PackageResult>();
+            for (final String key : properties.stringPropertyNames()) {
+                if (key.startsWith(PACKAGE_PREFIX) && key.endsWith(DELTA)) {
+                    final String prefix = key.substring(0, key.length() - DELTA.length());
+                    final String packageName = prefix.substring(PACKAGE_PREFIX.length());
+                    final String digest = properties.getProperty(prefix + DIGEST);
+                    if (digest != null) {
+                        packageDigests.put(packageName, digest);
+                    }
+                    packageResults.add(new PackageResult(
+                            packageName,
+                            Delta.valueOf(properties.getProperty(key)),
+                            toVersion(properties.getProperty(prefix + OLDER)),
+                            toVersion(properties.getProperty(prefix + NEWER)),
+                            toVersion(properties.getProperty(prefix + SUGGESTED)),
+                            null
+                    ));
+                }
+            }
+            final BaselineResult result = new BaselineResult(packageResults,
+                    toVersion(properties.getProperty(BUNDLE_OLDER)),
+                    toVersion(properties.getProperty(BUNDLE_NEWER)),
+                    toVersion(properties.getProperty(BUNDLE_SUGGESTED)));
+            return new IncrementalState(properties.getProperty(BASELINE), properties.getProperty(PRIVATE_DIGEST),
+                    packageDigests, result);
+        } catch (Exception e) {
+            log.debug("Ignoring unreadable baselining state " + file, e);
+            return null;
+        }
+    }
+
+    void store(final File file) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(FORMAT, FORMAT_VERSION);
+        properties.setProperty(BASELINE, baselineKey);
+        properties.setProperty(PRIVATE_DIGEST, privateDigest);
+        setVersion(properties, BUNDLE_OLDER, result.getOlderVersion());
+        setVersion(properties, BUNDLE_NEWER, result.getNewerVersion());
+        setVersion(properties, BUNDLE_SUGGESTED, result.getSuggestedVersion());
+        for (final PackageResult packageResult : result.getPackages()) {
+            final String prefix = PACKAGE_PREFIX + packageResult.getPackageName();
+            final String digest = packageDigests.get(packageResult.getPackageName());
+            if (digest != null) {
+                properties.setProperty(prefix + DIGEST, digest);
+            }
+            properties.setProperty(prefix + DELTA, packageResult.getDelta().name());
+            setVersion(properties, prefix + OLDER, packageResult.getOlderVersion());
+            setVersion(properties, prefix + NEWER, packageResult.getNewerVersion());
+            setVersion(properties, prefix + SUGGESTED, packageResult.getSuggestedVersion());
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        properties.store(bytes, "baselining state");
+        CacheFiles.write(file, bytes.toByteArray());
+    }
+
+    private static Map<String, String> getExportedDigests(final PackageDigests digests) {
+        final Map<String, String> exportedDigests = new HashMap<String, String>();
+        for (final String packageName : digests.getExports().keySet()) {
+            final String digest = digests.getDigests().get(packageName);
+            if (digest != null) {
+                exportedDigests.put(packageName, digest);
+            }
+        }
+        return exportedDigests;
+    }
+
+    private static boolean usesAny(final Attrs attrs, final Set<String> packageNames) {
+        final String uses = attrs.get("uses:");
+        if (uses == null) {
+            return false;
+        }
+        final Set<String> usedPackages = new HashSet<String>();
+        for (final String usedPackage : uses.split(",")) {
+            usedPackages.add(usedPackage.trim());
+        }
+        usedPackages.retainAll(packageNames);
+        return !usedPackages.isEmpty();
+    }
+
+    private static void setVersion(final Properties properties, final String key, final Version version) {
+        if (version != null) {
+            properties.setProperty(key, version.toString());
+        }
+    }
+
+    private static Version toVersion(final String version) {
+        return version == null ? null : Version.parseVersion(version);
+    }
+}
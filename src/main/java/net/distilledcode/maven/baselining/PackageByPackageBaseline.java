@@ -0,0 +1,83 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.Baseline;
+import aQute.bnd.osgi.Instructions;
+import aQute.bnd.service.diff.Differ;
+import aQute.libg.reporter.ReporterAdapter;
+
+import net.distilledcode.maven.baselining.BaselineMetrics.Phase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Baselines a bundle one package at a time, with memory bounded by the largest package.
+ *
+ * Diffing the complete API trees requires both trees, and the bnd {@code Jar}s they are
+ * computed from, to be held in memory at once. For bundles with tens of thousands of
+ * classes this may exhaust the heap. Instead, the API trees of each package are computed
+ * from the bundle archives, diffed and released before the next package is processed.
+ * Only the compact results are kept, the package diffs only if they need to be explained.
+ * This trades memory for time: the archives' class files are read once per package and
+ * supertypes may be analyzed repeatedly.
+ */
+class PackageByPackageBaseline {
+
+    private PackageByPackageBaseline() {
+    }
+
+    /**
+     * @param packages the packages to baseline, or {@code null} for all packages
+     * @param keepDiffs whether to keep the diffs of packages whose version does not match
+     *                  the suggested version
+     */
+    static BaselineResult baseline(final Differ differ, final BundleArchive newer, final BundleArchive older,
+                                   final Set<String> packages, final boolean keepDiffs,
+                                   final BaselineMetrics metrics) throws Exception {
+        final Set<String> packageNames = new TreeSet<String>(newer.getExportedPackages());
+        packageNames.addAll(older.getExportedPackages());
+        if (packages != null) {
+            packageNames.retainAll(packages);
+        }
+
+        final List<BaselineResult> results = new ArrayList<BaselineResult>();
+        for (final String packageName : packageNames) {
+            results.add(baselinePackage(differ, newer, older, packageName, keepDiffs, metrics));
+        }
+        if (results.isEmpty()) {
+            // no exports, yields the bundle versions
+            results.add(baselinePackage(differ, newer, older, null, keepDiffs, metrics));
+        }
+        return BaselineResult.combine(results);
+    }
+
+    private static BaselineResult baselinePackage(final Differ differ, final BundleArchive newer, final BundleArchive older,
+                                                  final String packageName, final boolean keepDiffs,
+                                                  final BaselineMetrics metrics) throws Exception {
+        final Set<String> packages = packageName == null
+                ? Collections.<String>emptySet()
+                : Collections.singleton(packageName);
+        long start = System.nanoTime();
+        final ApiTree n = ApiTree.create(differ, newer, packages);
+        final ApiTree o = ApiTree.create(differ, older, packages);
+        metrics.record(Phase.parse, start);
+
+        start = System.nanoTime();
+        final Baseline baseline = new Baseline(new ReporterAdapter(), differ);
+        baseline.baseline(n.getTree(), n.getExports(), o.getTree(), o.getExports(), new Instructions(packages));
+        final BaselineResult result = BaselineResult.from(baseline);
+        metrics.record(Phase.diff, start);
+
+        final List<PackageResult> packageResults = new ArrayList<PackageResult>();
+        for (final PackageResult packageResult : result.getPackages()) {
+            final boolean mismatch = packageResult.getSuggestedVersion() == null
+                    || !packageResult.getSuggestedVersion().equals(packageResult.getNewerVersion());
+            packageResults.add(keepDiffs && mismatch ? packageResult : packageResult.withoutDiff());
+        }
+        return new BaselineResult(packageResults, result.getOlderVersion(), result.getNewerVersion(),
+                result.getSuggestedVersion());
+    }
+}
@@ -0,0 +1,173 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.header.Attrs;
+import aQute.bnd.header.OSGiHeader;
+import aQute.bnd.header.Parameters;
+import aQute.bnd.osgi.Constants;
+import aQute.bnd.version.Version;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.Manifest;
+
+/**
+ * Content digests of the class files in a bundle, computed per java package.
+ *
+ * Only the content of class files is digested, in the order of their names. Hence
+ * timestamps and the order of entries in the JAR file do not affect the digests.
+ */
+public class PackageDigests {
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final Map<String, String> digests;
+
+    private final String exportPackage;
+
+    private final String bundleVersion;
+
+    PackageDigests(final Map<String, String> digests, final String exportPackage, final String bundleVersion) {
+        this.digests = digests;
+        this.exportPackage = exportPackage;
+        this.bundleVersion = bundleVersion;
+    }
+
+    public static PackageDigests compute(final File file, final Log log) throws IOException {
+        final BundleArchive archive = BundleArchive.open(file, log);
+        try {
+            return compute(archive);
+        } finally {
+            archive.close();
+        }
+    }
+
+    public static PackageDigests compute(final BundleArchive archive) throws IOException {
+        final byte[] buffer = new byte[8192];
+        final Map<String, MessageDigest> packageDigests = new HashMap<String, MessageDigest>();
+        // entry names are sorted, hence the classes of each package are digested in the order of their names
+        for (final String name : archive.getEntryNames()) {
+            if (!name.endsWith(CLASS_SUFFIX)) {
+                continue;
+            }
+            final String packageName = BundleArchive.getPackageName(name);
+            MessageDigest digest = packageDigests.get(packageName);
+            if (digest == null) {
+                digest = createDigest();
+                packageDigests.put(packageName, digest);
+            }
+            digest.update(toBytes(name));
+            final InputStream in = archive.openEntry(name);
+            try {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        final Map<String, String> digests = new HashMap<String, String>();
+        for (final Map.Entry<String, MessageDigest> packageDigest : packageDigests.entrySet()) {
+            digests.put(packageDigest.getKey(), BaselineTreeCache.toHex(packageDigest.getValue().digest()));
+        }
+
+        final Manifest manifest = archive.getManifest();
+        if (manifest == null) {
+            return new PackageDigests(digests, null, null);
+        }
+        return new PackageDigests(digests,
+                manifest.getMainAttributes().getValue(Constants.EXPORT_PACKAGE),
+                manifest.getMainAttributes().getValue(Constants.BUNDLE_VERSION));
+    }
+
+    /**
+     * Returns {@code true} if both bundles export the same packages with the same versions
+     * and all their class files are byte-identical. Baselining such bundles cannot find any
+     * API changes.
+     *
+     * Non-exported packages are compared as well, because exported classes may inherit
+     * public members from classes in non-exported packages.
+     */
+    public boolean hasSameApi(final PackageDigests other) {
+        return digests.equals(other.digests) && isSameExports(getExports(), other.getExports());
+    }
+
+    public Map<String, String> getDigests() {
+        return digests;
+    }
+
+    String getExportPackage() {
+        return exportPackage;
+    }
+
+    /**
+     * @return the raw {@code Bundle-Version} header, may be {@code null}
+     */
+    String getBundleVersionHeader() {
+        return bundleVersion;
+    }
+
+    /**
+     * Returns a digest over the class files of all packages that are not exported.
+     */
+    public String getPrivateDigest() {
+        final Parameters exports = getExports();
+        final MessageDigest digest = createDigest();
+        for (final Map.Entry<String, String> entry : new TreeMap<String, String>(digests).entrySet()) {
+            if (!exports.containsKey(entry.getKey())) {
+                digest.update(toBytes(entry.getKey() + "=" + entry.getValue() + "\n"));
+            }
+        }
+        return BaselineTreeCache.toHex(digest.digest());
+    }
+
+    /**
+     * Returns the bundle version without qualifier, the same way bnd's baselining treats it.
+     */
+    public Version getBundleVersion() {
+        return bundleVersion == null ? Version.emptyVersion : Version.parseVersion(bundleVersion).getWithoutQualifier();
+    }
+
+    public Parameters getExports() {
+        return exportPackage == null ? new Parameters() : OSGiHeader.parseHeader(exportPackage);
+    }
+
+    private static boolean isSameExports(final Parameters exports, final Parameters otherExports) {
+        if (!exports.keySet().equals(otherExports.keySet())) {
+            return false;
+        }
+        for (final Map.Entry<String, Attrs> export : exports.entrySet()) {
+            final Version version = Version.parseVersion(export.getValue().getVersion());
+            final Version otherVersion = Version.parseVersion(otherExports.get(export.getKey()).getVersion());
+            if (!version.equals(otherVersion)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] toBytes(final String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
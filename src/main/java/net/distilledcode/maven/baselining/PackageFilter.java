@@ -0,0 +1,54 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.osgi.Instructions;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Selects the exported packages to baseline by include and exclude patterns in bnd's
+ * syntax, e.g. {@code com.example.api.*} or {@code *.impl}. A package is selected if it
+ * matches any include pattern, or there are none, and does not match any exclude pattern.
+ */
+class PackageFilter {
+
+    private final Instructions includes;
+
+    private final Instructions excludes;
+
+    /**
+     * @param includes the include patterns, {@code null} or empty to include all packages
+     * @param excludes the exclude patterns, may be {@code null}
+     */
+    PackageFilter(final List<String> includes, final List<String> excludes) {
+        this.includes = includes == null ? new Instructions() : new Instructions(includes);
+        this.excludes = excludes == null ? new Instructions() : new Instructions(excludes);
+    }
+
+    /**
+     * @return {@code true} if the filter selects all packages
+     */
+    boolean isEmpty() {
+        return includes.isEmpty() && excludes.isEmpty();
+    }
+
+    boolean matches(final String packageName) {
+        // Instructions match everything if empty
+        return includes.matches(packageName) && (excludes.isEmpty() || !excludes.matches(packageName));
+    }
+
+    /**
+     * @return the matching packages among the given ones, ordered by name
+     */
+    Set<String> select(final Collection<String> packageNames) {
+        final Set<String> selected = new TreeSet<String>();
+        for (final String packageName : packageNames) {
+            if (matches(packageName)) {
+                selected.add(packageName);
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,76 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.Baseline;
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.service.diff.Diff;
+import aQute.bnd.version.Version;
+
+/**
+ * The baselining result of a single exported package.
+ */
+public class PackageResult {
+
+    private final String packageName;
+
+    private final Delta delta;
+
+    private final Version olderVersion;
+
+    private final Version newerVersion;
+
+    private final Version suggestedVersion;
+
+    private final Diff diff;
+
+    /**
+     * @param suggestedVersion the suggested version, {@code null} if the package was removed
+     * @param diff the package's diff, may be {@code null} if it is not available
+     */
+    public PackageResult(final String packageName, final Delta delta, final Version olderVersion,
+                         final Version newerVersion, final Version suggestedVersion, final Diff diff) {
+        this.packageName = packageName;
+        this.delta = delta;
+        this.olderVersion = olderVersion;
+        this.newerVersion = newerVersion;
+        this.suggestedVersion = suggestedVersion;
+        this.diff = diff;
+    }
+
+    static PackageResult from(final Baseline.Info info) {
+        return new PackageResult(info.packageName, info.packageDiff.getDelta(), info.olderVersion,
+                info.newerVersion, info.suggestedVersion, info.packageDiff);
+    }
+
+    /**
+     * @return this result without the package's diff, which references both API trees
+     */
+    PackageResult withoutDiff() {
+        return diff == null
+                ? this
+                : new PackageResult(packageName, delta, olderVersion, newerVersion, suggestedVersion, null);
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public Delta getDelta() {
+        return delta;
+    }
+
+    public Version getOlderVersion() {
+        return olderVersion;
+    }
+
+    public Version getNewerVersion() {
+        return newerVersion;
+    }
+
+    public Version getSuggestedVersion() {
+        return suggestedVersion;
+    }
+
+    public Diff getDiff() {
+        return diff;
+    }
+}
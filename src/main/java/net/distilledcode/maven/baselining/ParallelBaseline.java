@@ -0,0 +1,225 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.Baseline;
+import aQute.bnd.differ.DiffImpl;
+import aQute.bnd.osgi.Instructions;
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.service.diff.Diff;
+import aQute.bnd.service.diff.Differ;
+import aQute.bnd.service.diff.Tree;
+import aQute.bnd.service.diff.Type;
+import aQute.libg.reporter.ReporterAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Baselines the packages of a bundle concurrently.
+ *
+ * bnd diffs the complete API trees of two bundles on one thread. For bundles exporting
+ * many packages, the packages are partitioned and each partition of at least
+ * {@link #MIN_PACKAGES_PER_PARTITION} packages is diffed on its own thread, using views of the API trees that only contain the partition's packages and the
+ * manifest. The packages' results are independent of each other, and the bundle version
+ * is suggested based on the most severe package delta, so the partitions' results combine
+ * to the same result as diffing the complete trees (see {@link BaselineResult#combine(List)}).
+ */
+class ParallelBaseline {
+
+    private static final String API = "<api>";
+
+    private static final String MANIFEST = "<manifest>";
+
+    /**
+     * Diffing a few packages takes less time than starting threads for them.
+     */
+    static final int MIN_PACKAGES_PER_PARTITION = 8;
+
+    private ParallelBaseline() {
+    }
+
+    /**
+     * @param packages the packages to baseline, or {@code null} for all packages
+     * @param threads the maximum number of threads diffing partitions
+     */
+    static BaselineResult baseline(final Differ differ, final ApiTree n, final ApiTree o, final Set<String> packages,
+                                   final int threads) throws Exception {
+        return baseline(differ, n, o, packages, threads, MIN_PACKAGES_PER_PARTITION);
+    }
+
+    static BaselineResult baseline(final Differ differ, final ApiTree n, final ApiTree o, final Set<String> packages,
+                                   final int threads, final int minPackagesPerPartition) throws Exception {
+        final List<Set<String>> partitions = partition(getPackageNames(n.getTree(), o.getTree(), packages), threads,
+                minPackagesPerPartition);
+        if (partitions.size() <= 1) {
+            final Baseline baseline = new Baseline(new ReporterAdapter(), differ);
+            final Instructions packageFilters = packages == null ? new Instructions() : new Instructions(packages);
+            baseline.baseline(n.getTree(), n.getExports(), o.getTree(), o.getExports(), packageFilters);
+            return BaselineResult.from(baseline);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(partitions.size());
+        try {
+            final List<Future<BaselineResult>> futures = new ArrayList<Future<BaselineResult>>();
+            for (final Set<String> partition : partitions) {
+                futures.add(executor.submit(new Callable<BaselineResult>() {
+                    public BaselineResult call() throws Exception {
+                        final Baseline baseline = new Baseline(new ReporterAdapter(), differ);
+                        baseline.baseline(new PartialTree(n.getTree(), partition), n.getExports(),
+                                new PartialTree(o.getTree(), partition), o.getExports(), new Instructions());
+                        return BaselineResult.from(baseline);
+                    }
+                }));
+            }
+            // combined in partition order, the results are ordered by package name
+            final List<BaselineResult> results = new ArrayList<BaselineResult>();
+            for (final Future<BaselineResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : e;
+                }
+            }
+            return BaselineResult.combine(results);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the names of the packages in either tree, selected by {@code packages} if not
+     * {@code null}, ordered by name
+     */
+    static Set<String> getPackageNames(final Tree newer, final Tree older, final Set<String> packages) {
+        final Set<String> packageNames = new TreeSet<String>();
+        for (final Tree tree : new Tree[] {newer, older}) {
+            final Tree api = tree.get(API);
+            if (api == null) {
+                continue;
+            }
+            for (final Tree child : api.getChildren()) {
+                if (child.getType() == Type.PACKAGE && (packages == null || packages.contains(child.getName()))) {
+                    packageNames.add(child.getName());
+                }
+            }
+        }
+        return packageNames;
+    }
+
+    /**
+     * Distributes the packages round-robin over at most {@code threads} partitions of at least
+     * {@code minPackagesPerPartition} packages. Packages of the same namespace, which tend to
+     * be of similar size, end up in different partitions.
+     */
+    static List<Set<String>> partition(final Set<String> packageNames, final int threads,
+                                       final int minPackagesPerPartition) {
+        final int size = Math.max(1, Math.min(threads, packageNames.size() / minPackagesPerPartition));
+        final List<Set<String>> partitions = new ArrayList<Set<String>>(size);
+        for (int i = 0; i < size; i++) {
+            partitions.add(new TreeSet<String>());
+        }
+        int i = 0;
+        for (final String packageName : packageNames) {
+            partitions.get(i++ % size).add(packageName);
+        }
+        return partitions;
+    }
+
+    /**
+     * A view of a bundle's API tree containing only the given packages and the manifest,
+     * which bnd needs to determine the bundle versions.
+     */
+    static class PartialTree implements Tree {
+
+        private final Tree tree;
+
+        private final Tree[] children;
+
+        PartialTree(final Tree root, final Set<String> packages) {
+            this.tree = root;
+            final List<Tree> selected = new ArrayList<Tree>();
+            for (final Tree child : root.getChildren()) {
+                if (API.equals(child.getName())) {
+                    selected.add(new PartialTree(child, select(child.getChildren(), packages)));
+                } else if (MANIFEST.equals(child.getName())) {
+                    selected.add(child);
+                }
+            }
+            this.children = selected.toArray(new Tree[selected.size()]);
+        }
+
+        private PartialTree(final Tree tree, final Tree[] children) {
+            this.tree = tree;
+            this.children = children;
+        }
+
+        private static Tree[] select(final Tree[] packageTrees, final Set<String> packages) {
+            final List<Tree> selected = new ArrayList<Tree>();
+            for (final Tree packageTree : packageTrees) {
+                if (packages.contains(packageTree.getName())) {
+                    selected.add(packageTree);
+                }
+            }
+            return selected.toArray(new Tree[selected.size()]);
+        }
+
+        public Data serialize() {
+            final Data data = tree.serialize();
+            data.children = new Data[children.length];
+            for (int i = 0; i < children.length; i++) {
+                data.children[i] = children[i].serialize();
+            }
+            return data;
+        }
+
+        public Tree[] getChildren() {
+            return children;
+        }
+
+        public String getName() {
+            return tree.getName();
+        }
+
+        public Type getType() {
+            return tree.getType();
+        }
+
+        public Delta ifAdded() {
+            return tree.ifAdded();
+        }
+
+        public Delta ifRemoved() {
+            return tree.ifRemoved();
+        }
+
+        public Diff diff(final Tree older) {
+            return new DiffImpl(this, older);
+        }
+
+        public Tree get(final String name) {
+            for (final Tree child : children) {
+                if (child.getName().equals(name)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Orders trees like bnd does, by type and name, as expected by {@link DiffImpl}.
+         */
+        public int compareTo(final Tree other) {
+            if (getType() == other.getType()) {
+                return getName().compareTo(other.getName());
+            }
+            return getType().compareTo(other.getType());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Holds one instance of a store per build session, shared by all mojo executions of the
+ * build and released together with it.
+ *
+ * Maven injects a clone of the session into each project's mojo executions, hence the
+ * instances are kept per execution request, which all clones of a session share. The
+ * request is only weakly referenced, so that long-lived JVMs running several builds, e.g.
+ * build daemons, do not retain the stores of finished builds.
+ *
+ * @param <T> the type of the store
+ */
+class SessionScope<T> {
+
+    private final Map<MavenExecutionRequest, T> instances = new WeakHashMap<MavenExecutionRequest, T>();
+
+    /**
+     * Returns the instance of the given session, creating it with {@code factory} if necessary.
+     */
+    synchronized T get(final MavenSession session, final Factory<T> factory) {
+        T instance = instances.get(session.getRequest());
+        if (instance == null) {
+            instance = factory.create();
+            instances.put(session.getRequest(), instance);
+        }
+        return instance;
+    }
+
+    /**
+     * @return the number of sessions with an instance that have not been released yet
+     */
+    synchronized int size() {
+        return instances.size();
+    }
+
+    interface Factory<T> {
+
+        T create();
+    }
+}
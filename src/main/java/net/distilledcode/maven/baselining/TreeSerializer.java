@@ -0,0 +1,138 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.osgi.Analyzer;
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.service.diff.Differ;
+import aQute.bnd.service.diff.Tree;
+import aQute.bnd.service.diff.Type;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary (de-)serialization of an {@link ApiTree}.
+ *
+ * Names in a bnd diff tree are highly repetitive (types, deltas, common class names),
+ * therefore every string is written only once and subsequently referenced by index.
+ *
+ * The structure of the trees depends on the bnd version that computed them, persisted trees
+ * are therefore only read by the same {@link #BND_VERSION}.
+ */
+public class TreeSerializer {
+
+    private static final int MAGIC = 0x42544c54; // "BTLT"
+
+    static final int FORMAT_VERSION = 1;
+
+    static final String BND_VERSION = getBndVersion();
+
+    private static final int NULL_STRING = -1;
+
+    private static final int NEW_STRING = -2;
+
+    private TreeSerializer() {
+    }
+
+    public static void write(final DataOutput out, final ApiTree apiTree) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        final Map<String, Integer> strings = new HashMap<String, Integer>();
+        writeString(out, strings, apiTree.getExportPackage());
+        writeData(out, strings, apiTree.getTree().serialize());
+    }
+
+    public static ApiTree read(final DataInput in, final Differ differ) throws Exception {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a serialized API tree");
+        }
+        final int formatVersion = in.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported API tree format version " + formatVersion);
+        }
+        final List<String> strings = new ArrayList<String>();
+        final String exportPackage = readString(in, strings);
+        final Tree tree = differ.deserialize(readData(in, strings));
+        return new ApiTree(tree, exportPackage);
+    }
+
+    private static String getBndVersion() {
+        final Analyzer analyzer = new Analyzer();
+        try {
+            return analyzer.getBndVersion();
+        } finally {
+            analyzer.close();
+        }
+    }
+
+    private static void writeData(final DataOutput out, final Map<String, Integer> strings, final Tree.Data data)
+            throws IOException {
+        writeString(out, strings, data.name);
+        writeString(out, strings, data.type.name());
+        writeString(out, strings, data.add.name());
+        writeString(out, strings, data.rem.name());
+        writeString(out, strings, data.comment);
+        if (data.children == null) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(data.children.length);
+            for (final Tree.Data child : data.children) {
+                writeData(out, strings, child);
+            }
+        }
+    }
+
+    private static Tree.Data readData(final DataInput in, final List<String> strings) throws IOException {
+        final Tree.Data data = new Tree.Data();
+        data.name = readString(in, strings);
+        data.type = Type.valueOf(readString(in, strings));
+        data.add = Delta.valueOf(readString(in, strings));
+        data.rem = Delta.valueOf(readString(in, strings));
+        data.comment = readString(in, strings);
+        final int childCount = in.readInt();
+        if (childCount > 0) {
+            data.children = new Tree.Data[childCount];
+            for (int i = 0; i < childCount; i++) {
+                data.children[i] = readData(in, strings);
+            }
+        }
+        return data;
+    }
+
+    private static void writeString(final DataOutput out, final Map<String, Integer> strings, final String value)
+            throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_STRING);
+            return;
+        }
+        final Integer index = strings.get(value);
+        if (index != null) {
+            out.writeInt(index);
+        } else {
+            strings.put(value, strings.size());
+            final byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(NEW_STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(final DataInput in, final List<String> strings) throws IOException {
+        final int index = in.readInt();
+        if (index == NULL_STRING) {
+            return null;
+        }
+        if (index == NEW_STRING) {
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            final String value = new String(bytes, "UTF-8");
+            strings.add(value);
+            return value;
+        }
+        return strings.get(index);
+    }
+}
@@ -0,0 +1,191 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent cache of the versions available for an artifact, which allows skipping
+ * remote version lookups for a configurable time-to-live.
+ *
+ * A cached entry is considered stale once it is older than the time-to-live, or if
+ * the local repository contains a released version of the artifact that the entry
+ * does not know about, e.g. because a release was performed in the meantime.
+ */
+class VersionMetadataCache {
+
+    private static final Pattern TTL_PATTERN = Pattern.compile("(\\d+)\\s*(ms|s|m|h|d)?");
+
+    private static final String FILE_NAME = "versions.properties";
+
+    private static final String TIMESTAMP = "timestamp";
+
+    private static final String VERSIONS = "versions";
+
+    private final File directory;
+
+    private final File localRepositoryDirectory;
+
+    private final long ttlMillis;
+
+    private final Log log;
+
+    VersionMetadataCache(final File directory, final File localRepositoryDirectory, final long ttlMillis, final Log log) {
+        this.directory = directory;
+        this.localRepositoryDirectory = localRepositoryDirectory;
+        this.ttlMillis = ttlMillis;
+        this.log = log;
+    }
+
+    /**
+     * Parses a time-to-live like {@code 90s}, {@code 30m}, {@code 1h} or {@code 1d}. Numbers
+     * without a unit are interpreted as seconds.
+     *
+     * @return the time-to-live in milliseconds
+     */
+    static long parseTtl(final String ttl) {
+        final Matcher matcher = TTL_PATTERN.matcher(ttl.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid time-to-live '" + ttl + "', expected e.g. 90s, 30m, 1h or 1d");
+        }
+        final long value = Long.parseLong(matcher.group(1));
+        final String unit = matcher.group(2);
+        if ("ms".equals(unit)) {
+            return value;
+        } else if (unit == null || "s".equals(unit)) {
+            return TimeUnit.SECONDS.toMillis(value);
+        } else if ("m".equals(unit)) {
+            return TimeUnit.MINUTES.toMillis(value);
+        } else if ("h".equals(unit)) {
+            return TimeUnit.HOURS.toMillis(value);
+        } else {
+            return TimeUnit.DAYS.toMillis(value);
+        }
+    }
+
+    /**
+     * @return the cached versions of the artifact, or {@code null} if there is no valid entry
+     */
+    List<ArtifactVersion> get(final Artifact artifact) {
+        final File file = getCacheFile(artifact);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        final Properties properties = new Properties();
+        try {
+            final InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            log.debug("Ignoring unreadable version cache entry " + file, e);
+            return null;
+        }
+
+        final String timestamp = properties.getProperty(TIMESTAMP);
+        final String versions = properties.getProperty(VERSIONS);
+        if (timestamp == null || versions == null) {
+            return null;
+        }
+        final long age;
+        try {
+            age = System.currentTimeMillis() - Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring corrupt version cache entry " + file, e);
+            return null;
+        }
+        if (age < 0 || age > ttlMillis) {
+            log.debug("Version cache entry " + file + " expired");
+            return null;
+        }
+
+        final Set<String> knownVersions = new HashSet<String>();
+        final List<ArtifactVersion> artifactVersions = new ArrayList<ArtifactVersion>();
+        for (final String version : versions.split(",")) {
+            if (version.length() > 0) {
+                knownVersions.add(version);
+                artifactVersions.add(new DefaultArtifactVersion(version));
+            }
+        }
+        final String unknownVersion = findUnknownLocalRelease(artifact, knownVersions);
+        if (unknownVersion != null) {
+            log.debug("Version cache entry " + file + " invalidated by local release " + unknownVersion);
+            return null;
+        }
+        return artifactVersions;
+    }
+
+    void put(final Artifact artifact, final List<ArtifactVersion> versions) {
+        final StringBuilder sb = new StringBuilder();
+        for (final ArtifactVersion version : versions) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(version);
+        }
+        final Properties properties = new Properties();
+        properties.setProperty(TIMESTAMP, Long.toString(System.currentTimeMillis()));
+        properties.setProperty(VERSIONS, sb.toString());
+
+        final File file = getCacheFile(artifact);
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            properties.store(bytes, artifact.getGroupId() + ":" + artifact.getArtifactId());
+            CacheFiles.write(file, bytes.toByteArray());
+        } catch (IOException e) {
+            log.warn("Failed to store versions of " + artifact + " in " + file + ": " + e.getMessage());
+        }
+    }
+
+    private String findUnknownLocalRelease(final Artifact artifact, final Set<String> knownVersions) {
+        final File artifactDirectory = new File(localRepositoryDirectory, getArtifactPath(artifact));
+        final File[] versionDirectories = artifactDirectory.listFiles();
+        if (versionDirectories == null) {
+            return null;
+        }
+        for (final File versionDirectory : versionDirectories) {
+            final String version = versionDirectory.getName();
+            if (!versionDirectory.isDirectory() || version.endsWith(Artifact.SNAPSHOT_VERSION)
+                    || knownVersions.contains(version)) {
+                continue;
+            }
+            if (new File(versionDirectory, artifact.getArtifactId() + "-" + version + ".pom").isFile()) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the cache's directory and time-to-live, to tell caches configured differently apart
+     */
+    String getConfiguration() {
+        return "metadataTtl " + ttlMillis + "ms in " + directory;
+    }
+
+    File getCacheFile(final Artifact artifact) {
+        return new File(directory, getArtifactPath(artifact) + File.separator + FILE_NAME);
+    }
+
+    private static String getArtifactPath(final Artifact artifact) {
+        return artifact.getGroupId().replace('.', File.separatorChar) + File.separator + artifact.getArtifactId();
+    }
+}
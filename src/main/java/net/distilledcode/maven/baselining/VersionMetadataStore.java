@@ -0,0 +1,176 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.metadata.ArtifactMetadataRetrievalException;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Session scoped store of the versions available for artifacts.
+ *
+ * Retrieving the available versions of an artifact requires downloading the
+ * {@code maven-metadata.xml} from each remote repository. The store allows retrieving
+ * this metadata for all modules of a reactor build concurrently in one batch, so that
+ * individual mojo executions find the versions already available when they need them.
+ * Each artifact's metadata is retrieved at most once per session.
+ *
+ * The store is configured by the first mojo execution of the session requesting it, i.e.
+ * its {@link VersionMetadataCache}. Executions configuring a different cache use the
+ * store nonetheless and are warned about it once per configuration.
+ */
+class VersionMetadataStore {
+
+    static final SessionScope<VersionMetadataStore> STORES = new SessionScope<VersionMetadataStore>();
+
+    private static final int MAX_PREFETCH_THREADS = 8;
+
+    private final ConcurrentMap<String, Future<List<ArtifactVersion>>> versions =
+            new ConcurrentHashMap<String, Future<List<ArtifactVersion>>>();
+
+    private final ArtifactMetadataSource artifactMetadataSource;
+
+    private final ArtifactRepository localRepository;
+
+    private final VersionMetadataCache cache;
+
+    private final Set<String> ignoredConfigurations = Collections.synchronizedSet(new HashSet<String>());
+
+    private boolean prefetched;
+
+    private VersionMetadataStore(final ArtifactMetadataSource artifactMetadataSource, final ArtifactRepository localRepository,
+                                 final VersionMetadataCache cache) {
+        this.artifactMetadataSource = artifactMetadataSource;
+        this.localRepository = localRepository;
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the store of the given session, creating it if necessary. Warns if the store
+     * was created with another cache configuration, which then applies.
+     *
+     * @param cache the persistent cache to consult before querying remote repositories, may be {@code null}
+     */
+    static VersionMetadataStore forSession(final MavenSession session, final ArtifactMetadataSource artifactMetadataSource,
+                                           final ArtifactRepository localRepository, final VersionMetadataCache cache,
+                                           final Log log) {
+        final VersionMetadataStore store = STORES.get(session, new SessionScope.Factory<VersionMetadataStore>() {
+            public VersionMetadataStore create() {
+                return new VersionMetadataStore(artifactMetadataSource, localRepository, cache);
+            }
+        });
+        final String configuration = getConfiguration(cache);
+        if (!configuration.equals(getConfiguration(store.cache)) && store.ignoredConfigurations.add(configuration)) {
+            log.warn("The versions available for artifacts are cached with " + getConfiguration(store.cache)
+                    + " as configured first in this build, ignoring " + configuration);
+        }
+        return store;
+    }
+
+    private static String getConfiguration(final VersionMetadataCache cache) {
+        return cache == null ? "metadataTtl 0" : cache.getConfiguration();
+    }
+
+    /**
+     * Starts retrieving the available versions of all given artifacts concurrently. Only
+     * the first invocation per session has an effect, all subsequent invocations return
+     * immediately.
+     *
+     * @param artifacts the (non-snapshot) artifacts mapped to the remote repositories to query
+     */
+    void prefetch(final Map<Artifact, List<ArtifactRepository>> artifacts) {
+        synchronized (this) {
+            if (prefetched) {
+                return;
+            }
+            prefetched = true;
+        }
+
+        final int threads = Math.max(1, Math.min(MAX_PREFETCH_THREADS, artifacts.size()));
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("baselining-metadata"));
+        try {
+            for (final Map.Entry<Artifact, List<ArtifactRepository>> entry : artifacts.entrySet()) {
+                final FutureTask<List<ArtifactVersion>> task = createTask(entry.getKey(), entry.getValue());
+                if (versions.putIfAbsent(getKey(entry.getKey()), task) == null) {
+                    executor.execute(task);
+                }
+            }
+        } finally {
+            // lets the submitted tasks complete and the threads terminate afterwards
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Returns the available versions of the given artifact. If the versions have been
+     * prefetched, the prefetched result is returned (waiting for it to complete if necessary),
+     * otherwise the versions are retrieved in the calling thread.
+     */
+    List<ArtifactVersion> getAvailableVersions(final Artifact artifact, final List<ArtifactRepository> remoteRepositories)
+            throws ArtifactMetadataRetrievalException {
+        final String key = getKey(artifact);
+        Future<List<ArtifactVersion>> future = versions.get(key);
+        if (future == null) {
+            final FutureTask<List<ArtifactVersion>> task = createTask(artifact, remoteRepositories);
+            future = versions.putIfAbsent(key, task);
+            if (future == null) {
+                future = task;
+                task.run();
+            }
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ArtifactMetadataRetrievalException("Interrupted while retrieving versions of " + key, e, artifact);
+        } catch (ExecutionException e) {
+            // don't cache failures, a subsequent request may succeed
+            versions.remove(key, future);
+            final Throwable cause = e.getCause();
+            if (cause instanceof ArtifactMetadataRetrievalException) {
+                throw (ArtifactMetadataRetrievalException) cause;
+            }
+            throw new ArtifactMetadataRetrievalException("Failed to retrieve versions of " + key, cause, artifact);
+        }
+    }
+
+    private FutureTask<List<ArtifactVersion>> createTask(final Artifact artifact, final List<ArtifactRepository> remoteRepositories) {
+        return new FutureTask<List<ArtifactVersion>>(new Callable<List<ArtifactVersion>>() {
+            public List<ArtifactVersion> call() throws Exception {
+                if (cache != null) {
+                    final List<ArtifactVersion> cachedVersions = cache.get(artifact);
+                    if (cachedVersions != null) {
+                        return cachedVersions;
+                    }
+                }
+                final List<ArtifactVersion> versions =
+                        artifactMetadataSource.retrieveAvailableVersions(artifact, localRepository, remoteRepositories);
+                if (cache != null) {
+                    cache.put(artifact, versions);
+                }
+                return versions;
+            }
+        });
+    }
+
+    private static String getKey(final Artifact artifact) {
+        return artifact.getGroupId() + ":" + artifact.getArtifactId();
+    }
+}
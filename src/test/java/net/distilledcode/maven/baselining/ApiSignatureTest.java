@@ -0,0 +1,100 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.DiffPluginImpl;
+import aQute.bnd.service.diff.Delta;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static net.distilledcode.maven.baselining.TestBundles.createBundle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ApiSignatureTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndReadSignature() throws Exception {
+        final File bundle = createBundle(folder.newFile("api-1.0.0.jar"), "org.junit.rules;version=1.0.0");
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        final ApiTree computed = BaselineTreeCache.createApiTree(bundle, differ, new SystemStreamLog());
+        final File signature = folder.newFile("api-1.0.0-" + ApiSignature.CLASSIFIER + "." + ApiSignature.TYPE);
+        ApiSignature.write(signature, PackageDigests.compute(bundle, new SystemStreamLog()), computed);
+
+        assertTrue(ApiSignature.readDigests(signature).hasSameApi(PackageDigests.compute(bundle, new SystemStreamLog())));
+
+        final ApiTree read = ApiSignature.readApiTree(signature, differ);
+        assertEquals(computed.getExportPackage(), read.getExportPackage());
+        assertEquals(Delta.UNCHANGED, computed.getTree().diff(read.getTree()).getDelta());
+        assertTrue(ApiSignature.isReadable(signature));
+    }
+
+    @Test
+    public void signatureOfOtherBndVersionIsNotReadable() throws Exception {
+        final File bundle = createBundle(folder.newFile("api-1.0.0.jar"), "org.junit.rules;version=1.0.0");
+        final File signature = folder.newFile("api-1.0.0-" + ApiSignature.CLASSIFIER + "." + ApiSignature.TYPE);
+        ApiSignature.write(signature, PackageDigests.compute(bundle, new SystemStreamLog()), BaselineTreeCache.createApiTree(bundle, new DiffPluginImpl(), new SystemStreamLog()));
+
+        // replaces the bnd version following magic and format version
+        final DataInputStream in = new DataInputStream(new FileInputStream(signature));
+        final byte[] header = new byte[8];
+        final byte[] rest;
+        try {
+            in.readFully(header);
+            in.readUTF();
+            rest = new byte[in.available()];
+            in.readFully(rest);
+        } finally {
+            in.close();
+        }
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(signature));
+        try {
+            out.write(header);
+            out.writeUTF("0.0.1");
+            out.write(rest);
+        } finally {
+            out.close();
+        }
+
+        assertFalse(ApiSignature.isReadable(signature));
+    }
+
+    @Test
+    public void digestsDifferFromOtherBundle() throws Exception {
+        final File bundle = createBundle(folder.newFile("api-1.0.0.jar"), "org.junit.rules;version=1.0.0");
+        final File other = createBundle(folder.newFile("api-1.1.0.jar"), "org.junit.rules;version=1.0.0,org.junit.runner;version=1.0.0");
+        final File signature = folder.newFile("api-1.0.0-" + ApiSignature.CLASSIFIER + "." + ApiSignature.TYPE);
+        ApiSignature.write(signature, PackageDigests.compute(bundle, new SystemStreamLog()), BaselineTreeCache.createApiTree(bundle, new DiffPluginImpl(), new SystemStreamLog()));
+
+        assertFalse(ApiSignature.readDigests(signature).hasSameApi(PackageDigests.compute(other, new SystemStreamLog())));
+    }
+
+    @Test
+    public void isApiSignature() throws Exception {
+        assertTrue(ApiSignature.isApiSignature(new File("api-1.0.0-api-signature.tree")));
+        assertFalse(ApiSignature.isApiSignature(new File("api-1.0.0.jar")));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws Exception {
+        final File file = folder.newFile("api-1.0.0-" + ApiSignature.CLASSIFIER + "." + ApiSignature.TYPE);
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        } finally {
+            out.close();
+        }
+        ApiSignature.readDigests(file);
+    }
+}
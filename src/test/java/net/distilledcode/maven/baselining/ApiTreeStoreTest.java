@@ -0,0 +1,142 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.aether.RepositorySystemSession;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ApiTreeStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void computeTreesOnce() throws Exception {
+        final ApiTreeStore store = new ApiTreeStore(2);
+        final File bundle = temporaryFolder.newFile("bundle.jar");
+        final CountingLoader loader = new CountingLoader();
+        final BaselineMetrics metrics = new BaselineMetrics();
+
+        final ApiTree tree = store.getApiTree(bundle, loader, metrics);
+        assertSame(tree, store.getApiTree(bundle, loader, metrics));
+        assertEquals(1, loader.count.get());
+        assertEquals(1, metrics.getTreeCacheHits());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedTrees() throws Exception {
+        final ApiTreeStore store = new ApiTreeStore(2);
+        final File a = temporaryFolder.newFile("a.jar");
+        final File b = temporaryFolder.newFile("b.jar");
+        final File c = temporaryFolder.newFile("c.jar");
+        final CountingLoader loader = new CountingLoader();
+        final BaselineMetrics metrics = new BaselineMetrics();
+
+        store.getApiTree(a, loader, metrics);
+        store.getApiTree(b, loader, metrics);
+        store.getApiTree(a, loader, metrics);
+        store.getApiTree(c, loader, metrics); // evicts b
+        assertEquals(2, store.size());
+        assertEquals(3, loader.count.get());
+
+        store.getApiTree(a, loader, metrics);
+        assertEquals(3, loader.count.get());
+        store.getApiTree(b, loader, metrics);
+        assertEquals(4, loader.count.get());
+    }
+
+    @Test
+    public void recomputeModifiedBundles() throws Exception {
+        final ApiTreeStore store = new ApiTreeStore(2);
+        final File bundle = temporaryFolder.newFile("bundle.jar");
+        final CountingLoader loader = new CountingLoader();
+        final BaselineMetrics metrics = new BaselineMetrics();
+
+        store.getApiTree(bundle, loader, metrics);
+        bundle.setLastModified(bundle.lastModified() - 10000);
+        store.getApiTree(bundle, loader, metrics);
+        assertEquals(2, loader.count.get());
+    }
+
+    @Test
+    public void doNotStoreFailures() throws Exception {
+        final ApiTreeStore store = new ApiTreeStore(2);
+        final File bundle = temporaryFolder.newFile("bundle.jar");
+        final BaselineMetrics metrics = new BaselineMetrics();
+        try {
+            store.getApiTree(bundle, new Callable<ApiTree>() {
+                public ApiTree call() throws Exception {
+                    throw new IOException("corrupt");
+                }
+            }, metrics);
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertEquals("corrupt", e.getMessage());
+        }
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void clonedSessionsShareTheStore() {
+        final MavenSession session = createSession();
+        final Log log = new SystemStreamLog();
+        assertSame(ApiTreeStore.forSession(session.clone(), 2, log), ApiTreeStore.forSession(session.clone(), 2, log));
+        assertNotSame(ApiTreeStore.forSession(session, 2, log), ApiTreeStore.forSession(createSession(), 2, log));
+    }
+
+    @Test
+    public void largestMaximumSizeApplies() throws Exception {
+        final MavenSession session = createSession();
+        final WarningLog log = new WarningLog();
+        final ApiTreeStore store = ApiTreeStore.forSession(session, 3, log);
+        assertSame(store, ApiTreeStore.forSession(session.clone(), 1, log));
+        assertSame(store, ApiTreeStore.forSession(session.clone(), 1, log));
+        assertEquals(1, log.warnings);
+        final CountingLoader loader = new CountingLoader();
+        final BaselineMetrics metrics = new BaselineMetrics();
+        store.getApiTree(temporaryFolder.newFile("a.jar"), loader, metrics);
+        store.getApiTree(temporaryFolder.newFile("b.jar"), loader, metrics);
+        store.getApiTree(temporaryFolder.newFile("c.jar"), loader, metrics);
+        assertEquals(3, store.size());
+    }
+
+    private static MavenSession createSession() {
+        return new MavenSession(null, (RepositorySystemSession) null, new DefaultMavenExecutionRequest(),
+                new DefaultMavenExecutionResult());
+    }
+
+    private static class CountingLoader implements Callable<ApiTree> {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public ApiTree call() {
+            count.incrementAndGet();
+            return new ApiTree(null, null);
+        }
+    }
+
+    private static class WarningLog extends SystemStreamLog {
+
+        private int warnings;
+
+        @Override
+        public void warn(final CharSequence content) {
+            warnings++;
+        }
+    }
+}
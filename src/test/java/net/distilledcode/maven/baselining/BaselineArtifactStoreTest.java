@@ -0,0 +1,79 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BaselineArtifactStoreTest {
+
+    private static final String KEY = "test:api:1.0.0";
+
+    @Test
+    public void waitForPrefetchedArtifact() throws Exception {
+        final BaselineArtifactStore store = new BaselineArtifactStore();
+        final Artifact artifact = artifact();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        store.prefetch(new Runnable() {
+            public void run() {
+                try {
+                    store.getArtifact(KEY, new Callable<Artifact>() {
+                        public Artifact call() throws Exception {
+                            started.countDown();
+                            assertTrue(release.await(10, TimeUnit.SECONDS));
+                            return artifact;
+                        }
+                    });
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        release.countDown();
+
+        assertSame(artifact, store.getArtifact(KEY, new Callable<Artifact>() {
+            public Artifact call() throws Exception {
+                fail("artifact is resolved twice");
+                return null;
+            }
+        }));
+    }
+
+    @Test
+    public void failuresAreNotCached() throws Exception {
+        final BaselineArtifactStore store = new BaselineArtifactStore();
+        try {
+            store.getArtifact(KEY, new Callable<Artifact>() {
+                public Artifact call() throws Exception {
+                    throw new IOException("offline");
+                }
+            });
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertEquals("offline", e.getMessage());
+        }
+
+        final Artifact artifact = artifact();
+        assertSame(artifact, store.getArtifact(KEY, new Callable<Artifact>() {
+            public Artifact call() throws Exception {
+                return artifact;
+            }
+        }));
+    }
+
+    private static Artifact artifact() {
+        return new DefaultArtifact("test", "api", "1.0.0", "compile", "jar", null, new DefaultArtifactHandler("jar"));
+    }
+}
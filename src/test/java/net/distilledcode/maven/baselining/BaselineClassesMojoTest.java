@@ -0,0 +1,51 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class BaselineClassesMojoTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void packClassesAndManifest() throws Exception {
+        final File classes = folder.newFolder("classes");
+        write(new File(classes, "com/example/Api.class"), "class");
+        write(new File(classes, "META-INF/MANIFEST.MF"), "Manifest-Version: 1.0\r\nBundle-SymbolicName: stale\r\n");
+        final File manifest = write(folder.newFile("MANIFEST.MF"), "Manifest-Version: 1.0\r\nBundle-SymbolicName: test.api\r\n");
+        final File jar = new File(folder.getRoot(), "target/" + BaselineClassesMojo.FILE_NAME);
+
+        BaselineClassesMojo.pack(classes, manifest, jar);
+
+        final BundleArchive archive = BundleArchive.open(jar, new SystemStreamLog());
+        try {
+            assertEquals(new TreeSet<String>(Arrays.asList("META-INF/MANIFEST.MF", "com/example/Api.class")),
+                    new TreeSet<String>(archive.getEntryNames()));
+            assertEquals("test.api", archive.getManifest().getMainAttributes().getValue("Bundle-SymbolicName"));
+        } finally {
+            archive.close();
+        }
+    }
+
+    private static File write(final File file, final String content) throws IOException {
+        file.getParentFile().mkdirs();
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,82 @@
+package net.distilledcode.maven.baselining;
+
+import net.distilledcode.maven.baselining.BaselineMetrics.Format;
+import net.distilledcode.maven.baselining.BaselineMetrics.Phase;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class BaselineMetricsTest {
+
+    private static final DefaultArtifact ARTIFACT =
+            new DefaultArtifact("test", "api", "1.1.0", "compile", "jar", null, new DefaultArtifactHandler("jar"));
+
+    @Test
+    public void summary() {
+        assertEquals("Baselining took 1500 ms (metadata: 100 ms, resolve: 0 ms, digest: 20 ms, parse: 900 ms, "
+                + "diff: 300 ms, report: 5 ms), 3 packages, 42 classes, 1536 KB read, 1 tree cache hits, 0 misses",
+                createMetrics().getSummary());
+    }
+
+    @Test
+    public void writePrometheus() throws Exception {
+        final StringWriter out = new StringWriter();
+        createMetrics().write(out, Format.prometheus, ARTIFACT);
+        final String labels = "{group_id=\"test\",artifact_id=\"api\",version=\"1.1.0\"";
+        assertEquals("# HELP baselining_duration_seconds Time spent baselining the module.\n" +
+                "# TYPE baselining_duration_seconds gauge\n" +
+                "baselining_duration_seconds" + labels + "} 1.500000\n" +
+                "# HELP baselining_phase_duration_seconds Time spent in each phase of baselining the module.\n" +
+                "# TYPE baselining_phase_duration_seconds gauge\n" +
+                "baselining_phase_duration_seconds" + labels + ",phase=\"metadata\"} 0.100000\n" +
+                "baselining_phase_duration_seconds" + labels + ",phase=\"resolve\"} 0.000000\n" +
+                "baselining_phase_duration_seconds" + labels + ",phase=\"digest\"} 0.020000\n" +
+                "baselining_phase_duration_seconds" + labels + ",phase=\"parse\"} 0.900000\n" +
+                "baselining_phase_duration_seconds" + labels + ",phase=\"diff\"} 0.300000\n" +
+                "baselining_phase_duration_seconds" + labels + ",phase=\"report\"} 0.005000\n" +
+                "# HELP baselining_packages Number of exported packages baselined.\n" +
+                "# TYPE baselining_packages gauge\n" +
+                "baselining_packages" + labels + "} 3\n" +
+                "# HELP baselining_classes Number of class files in the bundle.\n" +
+                "# TYPE baselining_classes gauge\n" +
+                "baselining_classes" + labels + "} 42\n" +
+                "# HELP baselining_read_bytes Number of bytes read from bundles.\n" +
+                "# TYPE baselining_read_bytes gauge\n" +
+                "baselining_read_bytes" + labels + "} 1572864\n" +
+                "# HELP baselining_tree_cache_hits Number of API trees loaded from the cache.\n" +
+                "# TYPE baselining_tree_cache_hits gauge\n" +
+                "baselining_tree_cache_hits" + labels + "} 1\n" +
+                "# HELP baselining_tree_cache_misses Number of API trees missing in the cache.\n" +
+                "# TYPE baselining_tree_cache_misses gauge\n" +
+                "baselining_tree_cache_misses" + labels + "} 0\n", out.toString());
+    }
+
+    @Test
+    public void writeCsv() throws Exception {
+        final StringWriter out = new StringWriter();
+        createMetrics().write(out, Format.csv, ARTIFACT);
+        assertEquals("groupId,artifactId,version,totalMillis,metadataMillis,resolveMillis,digestMillis," +
+                "parseMillis,diffMillis,reportMillis,packages,classes,bytesRead,treeCacheHits,treeCacheMisses\n" +
+                "test,api,1.1.0,1500,100,0,20,900,300,5,3,42,1572864,1,0\n", out.toString());
+    }
+
+    private static BaselineMetrics createMetrics() {
+        final BaselineMetrics metrics = new BaselineMetrics(0);
+        metrics.add(Phase.metadata, 100000000L);
+        metrics.add(Phase.digest, 20000000L);
+        metrics.add(Phase.parse, 900000000L);
+        metrics.add(Phase.diff, 300000000L);
+        metrics.add(Phase.report, 5000000L);
+        metrics.setPackages(3);
+        metrics.setClasses(42);
+        metrics.addBytesRead(1024 * 1024);
+        metrics.addBytesRead(512 * 1024);
+        metrics.treeCacheHit();
+        metrics.stop(1500000000L);
+        return metrics;
+    }
+}
@@ -0,0 +1,126 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.it.VerificationException;
+import org.apache.maven.it.Verifier;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static net.distilledcode.maven.baselining.DummyApiIT.GROUP_ID;
+import static net.distilledcode.maven.baselining.DummyApiIT.createVerifier;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Baselines a synthetic bundle with thousands of exported classes in a forked Maven build
+ * and asserts that the {@code baseline} goal stays within its wall-clock and heap budgets.
+ *
+ * The heap budget is the forked build's maximum heap size, exceeding it fails the build.
+ * The wall-clock budget applies to the goal's total duration as reported in its metrics.
+ * Both can be set via {@code -Dbaselining.budget.millis} and {@code -Dbaselining.budget.heap}.
+ */
+public class BaselinePerformanceIT {
+
+    private static final String ARTIFACT_ID = "synthetic";
+
+    private static final long BUDGET_MILLIS = Long.getLong("baselining.budget.millis", 20000L);
+
+    private static final String BUDGET_HEAP = System.getProperty("baselining.budget.heap", "256m");
+
+    // 5000 classes, 10% with an added method and 2% with a removed method
+    private static final SyntheticBundles.Shape SHAPE = new SyntheticBundles.Shape(100, 50, 5, 0.1, 0.02);
+
+    private static File directory;
+
+    private static Verifier baseVerifier;
+
+    @BeforeClass
+    public static void setupClass() throws Exception {
+        directory = new File(System.getProperty("synthetic.bundles", "target/synthetic-bundles"));
+        baseVerifier = createVerifier(ARTIFACT_ID + "-1.0.0");
+        baseVerifier.setAutoclean(false);
+        extract(SyntheticBundles.older(directory, SHAPE), new File(baseVerifier.getBasedir(), "target/classes"));
+        baseVerifier.executeGoal("install");
+        baseVerifier.verifyErrorFreeLog();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws IOException {
+        baseVerifier.deleteArtifacts(GROUP_ID, ARTIFACT_ID, "1.0.0");
+        baseVerifier = null;
+    }
+
+    @Test
+    public void baselineWithinBudget() throws Exception {
+        final Verifier verifier = createVerifier(ARTIFACT_ID + "-1.0.1");
+        verifier.setAutoclean(false);
+        extract(SyntheticBundles.newer(directory, SHAPE), new File(verifier.getBasedir(), "target/classes"));
+        verifier.setForkJvm(true);
+        verifier.setEnvironmentVariable("MAVEN_OPTS", "-Xmx" + BUDGET_HEAP);
+        verifier.setSystemProperty("baselining.baseline.enforcement", "none");
+        verifier.setSystemProperty("baselining.baseline.metricsFormat", "csv");
+        verifier.executeGoal("verify");
+        verifier.verifyErrorFreeLog();
+        verifier.verifyTextInLog(String.format(BaselineMojo.MSG_BASELINING, "1.0.0"));
+        verifier.verifyTextInLog(String.format(BaselineMojo.MSG_RAISE_VERSION,
+                SyntheticBundles.PACKAGE_PREFIX + "0", "2.0.0", "1.0.0", "1.0.0"));
+        verifier.verifyTextInLog(String.format(BaselineMojo.MSG_RAISE_VERSION,
+                SyntheticBundles.PACKAGE_PREFIX + (SHAPE.getPackages() - 1), "2.0.0", "1.0.0", "1.0.0"));
+
+        final List<String> metrics = verifier.loadLines("target/" + BaselineMetrics.CSV_FILE_NAME, "UTF-8");
+        assertEquals(metrics.toString(), 2, metrics.size());
+        final String[] header = metrics.get(0).split(",");
+        final String[] values = metrics.get(1).split(",");
+        assertEquals("totalMillis", header[3]);
+        final long millis = Long.parseLong(values[3]);
+        assertTrue("Baselining " + SHAPE.getClasses() + " classes took " + millis + "ms, budget is "
+                + BUDGET_MILLIS + "ms", millis <= BUDGET_MILLIS);
+    }
+
+    /**
+     * Extracts the bundle's classes and manifest into the freshly extracted project's
+     * {@code target/classes}, which is why the verifiers must not clean the projects.
+     */
+    private static void extract(final File bundle, final File directory) throws IOException {
+        final ZipFile zip = new ZipFile(bundle);
+        try {
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                final File file = new File(directory, entry.getName());
+                if (entry.isDirectory()) {
+                    file.mkdirs();
+                    continue;
+                }
+                file.getParentFile().mkdirs();
+                final InputStream in = zip.getInputStream(entry);
+                try {
+                    final OutputStream out = new FileOutputStream(file);
+                    try {
+                        final byte[] buffer = new byte[8192];
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                    } finally {
+                        out.close();
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            zip.close();
+        }
+    }
+}
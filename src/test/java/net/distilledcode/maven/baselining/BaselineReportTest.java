@@ -0,0 +1,77 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.version.Version;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class BaselineReportTest {
+
+    private static final DefaultArtifact ARTIFACT =
+            new DefaultArtifact("test", "api", "1.1.0", "compile", "jar", null, new DefaultArtifactHandler("jar"));
+
+    @Test
+    public void writeResult() throws Exception {
+        final Version older = new Version(1, 0, 0);
+        final BaselineResult result = new BaselineResult(Arrays.asList(
+                new PackageResult("test.api", Delta.MINOR, older, older, new Version(1, 1, 0), null),
+                new PackageResult("test.api.removed", Delta.REMOVED, older, older, null, null)
+        ), older, new Version(1, 1, 0), new Version(2, 0, 0));
+
+        final StringWriter out = new StringWriter();
+        BaselineReport.write(out, ARTIFACT, "1.0.0", BaselineReport.STATUS_BASELINED,
+                result, "Raise \"test.api\"\n");
+        assertEquals("{\n" +
+                "  \"groupId\": \"test\",\n" +
+                "  \"artifactId\": \"api\",\n" +
+                "  \"version\": \"1.1.0\",\n" +
+                "  \"baselineVersion\": \"1.0.0\",\n" +
+                "  \"status\": \"baselined\",\n" +
+                "  \"bundle\": {\n" +
+                "    \"olderVersion\": \"1.0.0\",\n" +
+                "    \"newerVersion\": \"1.1.0\",\n" +
+                "    \"suggestedVersion\": \"2.0.0\"\n" +
+                "  },\n" +
+                "  \"packages\": [\n" +
+                "    {\n" +
+                "      \"name\": \"test.api\",\n" +
+                "      \"delta\": \"MINOR\",\n" +
+                "      \"olderVersion\": \"1.0.0\",\n" +
+                "      \"newerVersion\": \"1.0.0\",\n" +
+                "      \"suggestedVersion\": \"1.1.0\"\n" +
+                "    },\n" +
+                "    {\n" +
+                "      \"name\": \"test.api.removed\",\n" +
+                "      \"delta\": \"REMOVED\",\n" +
+                "      \"olderVersion\": \"1.0.0\",\n" +
+                "      \"newerVersion\": \"1.0.0\",\n" +
+                "      \"suggestedVersion\": null\n" +
+                "    }\n" +
+                "  ],\n" +
+                "  \"failures\": [\n" +
+                "    \"Raise \\\"test.api\\\"\"\n" +
+                "  ]\n" +
+                "}\n", out.toString());
+    }
+
+    @Test
+    public void writeWithoutBaseline() throws Exception {
+        final StringWriter out = new StringWriter();
+        BaselineReport.write(out, ARTIFACT, null, BaselineReport.STATUS_NO_BASELINE, null, "");
+        assertEquals("{\n" +
+                "  \"groupId\": \"test\",\n" +
+                "  \"artifactId\": \"api\",\n" +
+                "  \"version\": \"1.1.0\",\n" +
+                "  \"baselineVersion\": null,\n" +
+                "  \"status\": \"noBaseline\",\n" +
+                "  \"packages\": [],\n" +
+                "  \"failures\": []\n" +
+                "}\n", out.toString());
+    }
+}
@@ -0,0 +1,76 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.version.Version;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BaselineResultTest {
+
+    private static final Version V1_0 = new Version(1, 0, 0);
+
+    private static final Version V1_1 = new Version(1, 1, 0);
+
+    private static final Version V1_2 = new Version(1, 2, 0);
+
+    private static final Version V2_0 = new Version(2, 0, 0);
+
+    @Test
+    public void combineKeepsHighestSuggestedVersions() {
+        final BaselineResult latest = new BaselineResult(Arrays.asList(
+                new PackageResult("test.api", Delta.UNCHANGED, V1_1, V1_1, V1_1, null),
+                new PackageResult("test.spi", Delta.MAJOR, V1_1, V1_1, V2_0, null),
+                new PackageResult("test.removed", Delta.UNCHANGED, V1_0, V1_0, V1_0, null)
+        ), V1_1, V1_2, V2_0);
+        final BaselineResult previous = new BaselineResult(Arrays.asList(
+                new PackageResult("test.api", Delta.MINOR, V1_0, V1_1, V1_2, null),
+                new PackageResult("test.spi", Delta.MINOR, V1_0, V1_1, V1_1, null),
+                new PackageResult("test.removed", Delta.REMOVED, V1_0, null, null, null),
+                new PackageResult("test.old", Delta.REMOVED, V1_0, null, null, null)
+        ), V1_0, V1_2, V1_1);
+
+        final BaselineResult combined = BaselineResult.combine(Arrays.asList(latest, previous));
+        assertEquals(4, combined.getPackages().size());
+        assertEquals(Delta.MINOR, combined.getPackage("test.api").getDelta());
+        assertEquals(V1_2, combined.getPackage("test.api").getSuggestedVersion());
+        assertEquals(Delta.MAJOR, combined.getPackage("test.spi").getDelta());
+        assertEquals(V2_0, combined.getPackage("test.spi").getSuggestedVersion());
+        assertEquals(Delta.REMOVED, combined.getPackage("test.removed").getDelta());
+        assertNull(combined.getPackage("test.removed").getSuggestedVersion());
+        assertEquals(Delta.REMOVED, combined.getPackage("test.old").getDelta());
+
+        assertEquals(V1_1, combined.getOlderVersion());
+        assertEquals(V1_2, combined.getNewerVersion());
+        assertEquals(V2_0, combined.getSuggestedVersion());
+    }
+
+    @Test
+    public void combineSingleResult() {
+        final BaselineResult result = new BaselineResult(Arrays.asList(
+                new PackageResult("test.api", Delta.MINOR, V1_0, V1_0, V1_1, null)
+        ), V1_0, V1_1, V1_1);
+        final BaselineResult combined = BaselineResult.combine(Arrays.asList(result));
+        assertEquals(result.getPackages().iterator().next(), combined.getPackage("test.api"));
+        assertEquals(V1_1, combined.getSuggestedVersion());
+    }
+
+    @Test
+    public void selectSuggestsBundleVersionOfSelectedPackages() {
+        final BaselineResult result = new BaselineResult(Arrays.asList(
+                new PackageResult("test.api", Delta.MINOR, V1_0, V1_1, V1_1, null),
+                new PackageResult("test.impl", Delta.MAJOR, V1_0, V1_0, V2_0, null)
+        ), V1_0, V1_1, V2_0);
+
+        final BaselineResult selected = result.select(Collections.singleton("test.api"));
+        assertEquals(1, selected.getPackages().size());
+        assertNull(selected.getPackage("test.impl"));
+        assertEquals(V1_0, selected.getOlderVersion());
+        assertEquals(V1_1, selected.getNewerVersion());
+        assertEquals(V1_1, selected.getSuggestedVersion());
+    }
+}
@@ -0,0 +1,160 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.Baseline;
+import aQute.bnd.differ.DiffPluginImpl;
+import aQute.bnd.osgi.Instructions;
+import aQute.libg.reporter.ReporterAdapter;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static net.distilledcode.maven.baselining.TestBundles.createBundle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BaselineServerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File tokenDirectory;
+
+    private BaselineServer server;
+
+    private ExecutorService executor;
+
+    @Before
+    public void startServer() throws Exception {
+        tokenDirectory = folder.newFolder("tokens");
+        server = new BaselineServer(0, 8, tokenDirectory, new SystemStreamLog());
+        executor = Executors.newSingleThreadExecutor();
+        executor.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                server.serve();
+                return null;
+            }
+        });
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        server.close();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void baselineUsingServer() throws Exception {
+        final File older = createBundle(folder.newFile("older.jar"),
+                "org.junit.rules;version=1.0.0,org.junit.runner;version=1.0.0");
+        final File newer = createBundle(folder.newFile("newer.jar"),
+                "org.junit.rules;version=1.0.0,org.junit.matchers;version=1.0.0");
+
+        final BaselineResult expected = baselineInProcess(newer, older);
+        // the second request is served from the server's API trees
+        for (int i = 0; i < 2; i++) {
+            final BaselineResult result = BaselineServer.baseline(tokenDirectory, server.getPort(), newer, Arrays.asList(older), null);
+            assertResultEquals(expected, result);
+        }
+    }
+
+    @Test
+    public void baselineSubsetOfPackagesUsingServer() throws Exception {
+        final File older = createBundle(folder.newFile("older.jar"),
+                "org.junit.rules;version=1.0.0,org.junit.runner;version=1.0.0");
+        final File newer = createBundle(folder.newFile("newer.jar"),
+                "org.junit.rules;version=1.0.0,org.junit.runner;version=1.0.0");
+
+        final BaselineResult result = BaselineServer.baseline(tokenDirectory, server.getPort(), newer, Arrays.asList(older),
+                Collections.singleton("org.junit.rules"));
+        assertEquals(1, result.getPackages().size());
+        assertEquals("org.junit.rules", result.getPackages().iterator().next().getPackageName());
+        assertNull(result.getPackages().iterator().next().getDiff());
+    }
+
+    @Test
+    public void rejectInvalidToken() throws Exception {
+        final File tokenFile = BaselineServer.getTokenFile(tokenDirectory, server.getPort());
+        assertTrue(tokenFile.isFile());
+        final File otherDirectory = folder.newFolder("other");
+        final FileOutputStream out = new FileOutputStream(BaselineServer.getTokenFile(otherDirectory, server.getPort()));
+        try {
+            out.write(new byte[(int) tokenFile.length()]);
+        } finally {
+            out.close();
+        }
+        final File bundle = createBundle(folder.newFile("bundle.jar"), "org.junit.rules;version=1.0.0");
+        try {
+            BaselineServer.baseline(otherDirectory, server.getPort(), bundle, Arrays.asList(bundle), null);
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertEquals("Baselining server failed: Invalid token", e.getMessage());
+        }
+    }
+
+    @Test
+    public void deleteTokenFileOnClose() throws Exception {
+        final File tokenFile = BaselineServer.getTokenFile(tokenDirectory, server.getPort());
+        assertTrue(tokenFile.isFile());
+        server.close();
+        assertFalse(tokenFile.exists());
+    }
+
+    @Test
+    public void failWithoutServer() throws Exception {
+        final ServerSocket socket = new ServerSocket(0);
+        final int port = socket.getLocalPort();
+        socket.close();
+        final File bundle = createBundle(folder.newFile("bundle.jar"), "org.junit.rules;version=1.0.0");
+        try {
+            BaselineServer.baseline(tokenDirectory, port, bundle, Arrays.asList(bundle), null);
+            fail("ConnectException expected");
+        } catch (ConnectException e) {
+            // expected
+        }
+    }
+
+    private static BaselineResult baselineInProcess(final File newer, final File older) throws Exception {
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        final ApiTree n = BaselineTreeCache.createApiTree(newer, differ, new SystemStreamLog());
+        final ApiTree o = BaselineTreeCache.createApiTree(older, differ, new SystemStreamLog());
+        final Baseline baseline = new Baseline(new ReporterAdapter(), differ);
+        baseline.baseline(n.getTree(), n.getExports(), o.getTree(), o.getExports(), new Instructions());
+        return BaselineResult.from(baseline);
+    }
+
+    private static void assertResultEquals(final BaselineResult expected, final BaselineResult actual) {
+        assertEquals(expected.getOlderVersion(), actual.getOlderVersion());
+        assertEquals(expected.getNewerVersion(), actual.getNewerVersion());
+        assertEquals(expected.getSuggestedVersion(), actual.getSuggestedVersion());
+        assertEquals(expected.getPackages().size(), actual.getPackages().size());
+        final Iterator<PackageResult> actualPackages = actual.getPackages().iterator();
+        for (final PackageResult expectedPackage : expected.getPackages()) {
+            final PackageResult actualPackage = actualPackages.next();
+            assertEquals(expectedPackage.getPackageName(), actualPackage.getPackageName());
+            assertEquals(expectedPackage.getDelta(), actualPackage.getDelta());
+            assertEquals(expectedPackage.getOlderVersion(), actualPackage.getOlderVersion());
+            assertEquals(expectedPackage.getNewerVersion(), actualPackage.getNewerVersion());
+            assertEquals(expectedPackage.getSuggestedVersion(), actualPackage.getSuggestedVersion());
+        }
+    }
+}
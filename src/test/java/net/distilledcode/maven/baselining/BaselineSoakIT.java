@@ -0,0 +1,265 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.DiffPluginImpl;
+import com.sun.management.UnixOperatingSystemMXBean;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactResolutionRequest;
+import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.repository.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static net.distilledcode.maven.baselining.TestBundles.createBundle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs thousands of executions of the {@code baseline} goal in one JVM, each in a new build
+ * session, as a long-lived build daemon does. Asserts that heap usage, open file descriptors
+ * and live threads stay flat and that the session-scoped stores are released with their
+ * sessions. The number of executions can be set via {@code -Dbaselining.soak.iterations}.
+ */
+public class BaselineSoakIT {
+
+    private static final int ITERATIONS = Integer.getInteger("baselining.soak.iterations", 2000);
+
+    private static final int WARMUP_ITERATIONS = 100;
+
+    private static final long MAX_HEAP_GROWTH = 16L * 1024 * 1024;
+
+    private static final int MAX_THREAD_GROWTH = 2;
+
+    private static final String GROUP_ID = "test";
+
+    private static final String ARTIFACT_ID = "api";
+
+    private static final String OLDER_EXPORTS =
+            "org.junit.rules;version=1.0.0,org.junit.runner;version=1.0.0,org.junit.matchers;version=1.0.0";
+
+    // keeps all packages, the goal cannot report removed packages, which have no newer version
+    private static final String NEWER_EXPORTS = "org.junit.rules;version=1.0.0,org.junit.runner;version=1.1.0,"
+            + "org.junit.matchers;version=1.0.0,org.junit.runners;version=1.0.0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void resourcesStayFlat() throws Exception {
+        final File older = createBundle(folder.newFile("api-1.0.0.jar"), OLDER_EXPORTS);
+        final File newer = createBundle(folder.newFile("api-1.1.0.jar"), NEWER_EXPORTS);
+        final File signature = folder.newFile("api-1.0.0-" + ApiSignature.CLASSIFIER + "." + ApiSignature.TYPE);
+        ApiSignature.write(signature, PackageDigests.compute(older, new SystemStreamLog()), BaselineTreeCache.createApiTree(older, new DiffPluginImpl(), new SystemStreamLog()));
+        final File buildDirectory = folder.newFolder("target");
+        final File cacheDirectory = folder.newFolder("cache");
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            baseline(i, newer, older, signature, buildDirectory, cacheDirectory);
+        }
+        final long heap = getUsedHeap();
+        final long fileDescriptors = getOpenFileDescriptors();
+        final int threads = Thread.activeCount();
+
+        for (int i = WARMUP_ITERATIONS; i < ITERATIONS; i++) {
+            baseline(i, newer, older, signature, buildDirectory, cacheDirectory);
+        }
+
+        final long heapGrowth = getUsedHeap() - heap;
+        assertTrue("Heap grew by " + heapGrowth + " bytes", heapGrowth < MAX_HEAP_GROWTH);
+        assertEquals("Open file descriptors", fileDescriptors, getOpenFileDescriptors());
+        final int threadGrowth = Thread.activeCount() - threads;
+        assertTrue("Live threads grew by " + threadGrowth, threadGrowth <= MAX_THREAD_GROWTH);
+        assertEquals("Version metadata stores", 0, VersionMetadataStore.STORES.size());
+        assertEquals("Baseline artifact stores", 0, BaselineArtifactStore.STORES.size());
+        assertEquals("API tree stores", 0, ApiTreeStore.STORES.size());
+    }
+
+    /**
+     * Baselines the bundle with a new mojo in a new session, alternating between the ways
+     * the goal reads the baseline and diffs the packages.
+     */
+    private static void baseline(final int iteration, final File newer, final File older, final File signature,
+                                 final File buildDirectory, final File cacheDirectory) throws Exception {
+        final AtomicReference<BaselineResult> result = new AtomicReference<BaselineResult>();
+        final BaselineMojo mojo = new BaselineMojo() {
+            @Override
+            protected void projectBaselined(final MavenProject project, final BaselineResult baselineResult) {
+                result.set(baselineResult);
+            }
+        };
+        mojo.setLog(new QuietLog());
+        set(mojo, "session", new MavenSession(null, (RepositorySystemSession) null,
+                new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult()));
+        set(mojo, "repositorySystem", createRepositorySystem(older, signature));
+        set(mojo, "artifactMetadataSource", createMetadataSource());
+        set(mojo, "explainLimit", 1000);
+        set(mojo, "failOnError", true);
+        set(mojo, "enforcement", AbstractBaselineMojo.Enforcement.lowerAndUpperBound);
+        set(mojo, "cache", true);
+        set(mojo, "cacheDirectory", cacheDirectory);
+        set(mojo, "sessionCacheSize", 32);
+        set(mojo, "checkIdenticalClasses", true);
+        set(mojo, "prefetchMetadata", true);
+        set(mojo, "metadataTtl", "0");
+        set(mojo, "strategy", BaselineVersionSelector.Strategy.latest);
+        set(mojo, "metricsFormat", BaselineMetrics.Format.none);
+        switch (iteration % 3) {
+            case 0:
+                break;
+            case 1:
+                set(mojo, "apiSignature", true);
+                set(mojo, "incremental", true);
+                break;
+            default:
+                set(mojo, "lowMemory", true);
+                set(mojo, "includePackages", Collections.singletonList("org.junit.runner"));
+        }
+
+        final MavenProject project = new MavenProject();
+        project.setGroupId(GROUP_ID);
+        project.setArtifactId(ARTIFACT_ID);
+        project.setVersion("1.1.0");
+        project.getBuild().setDirectory(buildDirectory.getPath());
+        project.setRemoteArtifactRepositories(Collections.<ArtifactRepository>emptyList());
+        final Artifact artifact = createArtifact("1.1.0", null);
+        artifact.setFile(newer);
+        project.setArtifact(artifact);
+
+        assertNotNull(mojo.baselineProject(mojo.getLog(), project));
+        assertNotNull(result.get().getPackage("org.junit.runner"));
+    }
+
+    private static Artifact createArtifact(final String version, final String classifier) {
+        return new DefaultArtifact(GROUP_ID, ARTIFACT_ID, version, "compile",
+                classifier == null ? "jar" : ApiSignature.TYPE, classifier, new DefaultArtifactHandler("jar"));
+    }
+
+    /**
+     * Resolves the baseline and its API signature to the given files.
+     */
+    private static RepositorySystem createRepositorySystem(final File older, final File signature) {
+        return (RepositorySystem) Proxy.newProxyInstance(BaselineSoakIT.class.getClassLoader(),
+                new Class<?>[]{RepositorySystem.class}, new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if ("createArtifact".equals(method.getName()) && args.length == 5) {
+                            return createArtifact((String) args[2], null);
+                        }
+                        if ("createArtifactWithClassifier".equals(method.getName())) {
+                            return createArtifact((String) args[2], (String) args[4]);
+                        }
+                        if ("resolve".equals(method.getName())) {
+                            final Artifact artifact = ((ArtifactResolutionRequest) args[0]).getArtifact();
+                            artifact.setFile(ApiSignature.isApiSignature(artifact) ? signature : older);
+                            return new ArtifactResolutionResult();
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static ArtifactMetadataSource createMetadataSource() {
+        return (ArtifactMetadataSource) Proxy.newProxyInstance(BaselineSoakIT.class.getClassLoader(),
+                new Class<?>[]{ArtifactMetadataSource.class}, new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (!"retrieveAvailableVersions".equals(method.getName())) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        return Collections.<ArtifactVersion>singletonList(new DefaultArtifactVersion("1.0.0"));
+                    }
+                });
+    }
+
+    /**
+     * Sets a field of the mojo as Maven's dependency injection does.
+     */
+    private static void set(final Object mojo, final String name, final Object value) throws Exception {
+        for (Class<?> type = mojo.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                final Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(mojo, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                // declared by a superclass
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+
+    private static long getUsedHeap() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // the minimum of several collections is less sensitive to concurrent allocations
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    /**
+     * @return the number of open file descriptors, or {@code -1} if not supported by the platform
+     */
+    private static long getOpenFileDescriptors() {
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof UnixOperatingSystemMXBean
+                ? ((UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount()
+                : -1;
+    }
+
+    /**
+     * Only logs warnings and errors, thousands of executions would otherwise flood the output.
+     */
+    private static class QuietLog extends SystemStreamLog {
+
+        @Override
+        public boolean isDebugEnabled() {
+            return false;
+        }
+
+        @Override
+        public boolean isInfoEnabled() {
+            return false;
+        }
+
+        @Override
+        public void debug(final CharSequence content) {
+        }
+
+        @Override
+        public void debug(final CharSequence content, final Throwable error) {
+        }
+
+        @Override
+        public void info(final CharSequence content) {
+        }
+
+        @Override
+        public void info(final CharSequence content, final Throwable error) {
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.DiffPluginImpl;
+import aQute.bnd.service.diff.Delta;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import static net.distilledcode.maven.baselining.TestBundles.createBundle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BaselineTreeCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void storeAndLoadApiTree() throws Exception {
+        final File cacheDirectory = folder.newFolder("cache");
+        final Artifact artifact = artifact("1.0.0", createBundle(folder.newFile("api-1.0.0.jar"), "org.junit.rules;version=1.0.0"));
+        final DiffPluginImpl differ = new DiffPluginImpl();
+
+        final ApiTree computed = new BaselineTreeCache(cacheDirectory, new SystemStreamLog()).getApiTree(artifact, differ);
+        final File cacheFile = new File(cacheDirectory, "test/api/1.0.0/"
+                + BaselineTreeCache.getCacheFileName(BaselineTreeCache.sha1(artifact.getFile())));
+        assertTrue("cache entry expected", cacheFile.isFile());
+
+        final ApiTree cached = new BaselineTreeCache(cacheDirectory, new SystemStreamLog()).getApiTree(artifact, differ);
+        assertEquals(computed.getExportPackage(), cached.getExportPackage());
+        assertEquals(Delta.UNCHANGED, computed.getTree().diff(cached.getTree()).getDelta());
+    }
+
+    @Test
+    public void entriesOfOtherVersionsAreNotRead() throws Exception {
+        final File cacheDirectory = folder.newFolder("cache");
+        final Artifact artifact = artifact("1.0.0", createBundle(folder.newFile("api-1.0.0.jar"), "org.junit.rules;version=1.0.0"));
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        // an entry without versions in its name, as written before bnd versions were part of the key
+        final File staleFile = new File(cacheDirectory, "test/api/1.0.0/" + BaselineTreeCache.sha1(artifact.getFile()) + ".tree");
+        assertTrue(staleFile.getParentFile().mkdirs());
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(staleFile));
+        try {
+            TreeSerializer.write(out, BaselineTreeCache.createApiTree(
+                    createBundle(folder.newFile("other.jar"), "org.junit.runner;version=1.0.0"), differ, new SystemStreamLog()));
+        } finally {
+            out.close();
+        }
+
+        final BaselineMetrics metrics = new BaselineMetrics();
+        final ApiTree apiTree = new BaselineTreeCache(cacheDirectory, new SystemStreamLog()).getApiTree(artifact, differ, metrics);
+        assertEquals(0, metrics.getTreeCacheHits());
+        assertEquals(1, metrics.getTreeCacheMisses());
+        assertTrue(apiTree.getExportPackage().startsWith("org.junit.rules;"));
+    }
+
+    @Test
+    public void snapshotsAreNotCached() throws Exception {
+        final File cacheDirectory = folder.newFolder("cache");
+        final Artifact artifact = artifact("1.0.0-SNAPSHOT", createBundle(folder.newFile("api-1.0.0-SNAPSHOT.jar"), "org.junit.rules;version=1.0.0"));
+
+        new BaselineTreeCache(cacheDirectory, new SystemStreamLog()).getApiTree(artifact, new DiffPluginImpl());
+        assertEquals(0, cacheDirectory.list().length);
+    }
+
+    private static Artifact artifact(final String version, final File file) {
+        final Artifact artifact = new DefaultArtifact("test", "api", version, "compile", "jar", null, new DefaultArtifactHandler("jar"));
+        artifact.setFile(file);
+        return artifact;
+    }
+}
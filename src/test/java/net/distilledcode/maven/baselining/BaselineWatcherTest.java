@@ -0,0 +1,120 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.DiffPluginImpl;
+import aQute.bnd.version.Version;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+import static net.distilledcode.maven.baselining.TestBundles.createBundle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BaselineWatcherTest {
+
+    private static final String OLDER_EXPORTS =
+            "org.junit.rules;version=1.0.0,org.junit.runner;version=1.0.0,org.junit.matchers;version=1.0.0";
+
+    private static final String NEWER_EXPORTS =
+            "org.junit.rules;version=1.0.0,org.junit.runner;version=1.1.0,org.junit.matchers;version=1.0.0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void unchangedPackagesAreNotDiffedAgain() throws Exception {
+        final BaselineWatcher watcher = createWatcher(new PackageFilter(null, null));
+
+        final BaselineResult first = baseline(watcher, createBundle(folder.newFile("api-1.jar"), OLDER_EXPORTS));
+        assertEquals(3, watcher.getDiffedPackages());
+        assertEquals(3, first.getPackages().size());
+
+        final BaselineResult unchanged = baseline(watcher, createBundle(folder.newFile("api-2.jar"), OLDER_EXPORTS));
+        assertEquals(0, watcher.getDiffedPackages());
+        assertEquals(3, unchanged.getPackages().size());
+        assertEquals(first.getSuggestedVersion(), unchanged.getSuggestedVersion());
+
+        final BaselineResult changed = baseline(watcher, createBundle(folder.newFile("api-3.jar"), NEWER_EXPORTS));
+        assertTrue(watcher.getDiffedPackages() < 3);
+        assertEquals(3, changed.getPackages().size());
+        assertEquals(Version.parseVersion("1.1.0"), changed.getPackage("org.junit.runner").getNewerVersion());
+    }
+
+    @Test
+    public void resultEqualsCompleteDiff() throws Exception {
+        final BaselineWatcher watcher = createWatcher(new PackageFilter(null, null));
+        baseline(watcher, createBundle(folder.newFile("api-1.jar"), OLDER_EXPORTS));
+        final File newerFile = createBundle(folder.newFile("api-2.jar"), NEWER_EXPORTS);
+        final BaselineResult actual = baseline(watcher, newerFile);
+
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        final BaselineResult expected = ParallelBaseline.baseline(differ, BaselineTreeCache.createApiTree(newerFile, differ, new SystemStreamLog()),
+                BaselineTreeCache.createApiTree(createBundle(folder.newFile("baseline.jar"), OLDER_EXPORTS), differ, new SystemStreamLog()), null, 1);
+        assertEquals(expected.getSuggestedVersion(), actual.getSuggestedVersion());
+        for (final PackageResult expectedPackage : expected.getPackages()) {
+            final PackageResult actualPackage = actual.getPackage(expectedPackage.getPackageName());
+            assertNotNull(expectedPackage.getPackageName(), actualPackage);
+            assertEquals(expectedPackage.getPackageName(), expectedPackage.getDelta(), actualPackage.getDelta());
+            assertEquals(expectedPackage.getPackageName(), expectedPackage.getSuggestedVersion(), actualPackage.getSuggestedVersion());
+        }
+    }
+
+    @Test
+    public void selectedPackagesOnly() throws Exception {
+        final BaselineWatcher watcher = createWatcher(
+                new PackageFilter(Collections.singletonList("org.junit.runner"), null));
+        final BaselineResult result = baseline(watcher, createBundle(folder.newFile("api-1.jar"), NEWER_EXPORTS));
+        assertEquals(1, result.getPackages().size());
+        assertNotNull(result.getPackage("org.junit.runner"));
+    }
+
+    @Test
+    public void noSelectedPackages() throws Exception {
+        final BaselineWatcher watcher = createWatcher(
+                new PackageFilter(Collections.singletonList("com.example"), null));
+        assertNull(baseline(watcher, createBundle(folder.newFile("api-1.jar"), NEWER_EXPORTS)));
+    }
+
+    @Test
+    public void snapshotDetectsChanges() throws Exception {
+        final File directory = folder.newFolder("classes");
+        final File classFile = new File(new File(directory, "pkg"), "A.class");
+        classFile.getParentFile().mkdirs();
+        classFile.createNewFile();
+        final File manifest = folder.newFile("MANIFEST.MF");
+
+        final Map<String, Long> snapshot = BaselineWatcher.snapshot(directory, manifest);
+        assertEquals(2, snapshot.size());
+        assertEquals(snapshot, BaselineWatcher.snapshot(directory, manifest));
+
+        classFile.setLastModified(classFile.lastModified() - 10000L);
+        assertFalse(snapshot.equals(BaselineWatcher.snapshot(directory, manifest)));
+
+        new File(classFile.getParentFile(), "B.class").createNewFile();
+        assertEquals(3, BaselineWatcher.snapshot(directory, manifest).size());
+    }
+
+    private BaselineWatcher createWatcher(final PackageFilter packageFilter) throws Exception {
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        final File baseline = createBundle(folder.newFile("api-1.0.0.jar"), OLDER_EXPORTS);
+        return new BaselineWatcher(differ, Collections.singletonList(BaselineTreeCache.createApiTree(baseline, differ, new SystemStreamLog())),
+                packageFilter, 2);
+    }
+
+    private static BaselineResult baseline(final BaselineWatcher watcher, final File file) throws Exception {
+        final BundleArchive archive = BundleArchive.open(file, new SystemStreamLog());
+        try {
+            return watcher.baseline(archive);
+        } finally {
+            archive.close();
+        }
+    }
+}
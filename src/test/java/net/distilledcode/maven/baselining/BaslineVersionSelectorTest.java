@@ -2,6 +2,7 @@ package net.distilledcode.maven.baselining;
 
 import org.apache.maven.artifact.versioning.ArtifactVersion;
 import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import net.distilledcode.maven.baselining.BaselineVersionSelector.Strategy;
 import org.junit.Test;
 
 import java.util.Collection;
@@ -68,6 +69,46 @@ public class BaslineVersionSelectorTest {
         assertNull(baselineVersion);
     }
 
+    @Test
+    public void baselineSameMajorVersion() {
+        final ArtifactVersion baselineVersion = selectBaselineVersion(
+                v("2.1.0-SNAPSHOT"),
+                vs("1.0.0", "1.9.3", "2.0.0-SNAPSHOT", "1.9.4-SNAPSHOT"),
+                Strategy.sameMajor
+        );
+        assertNull(baselineVersion);
+    }
+
+    @Test
+    public void baselineSameMinorVersion() {
+        final ArtifactVersion baselineVersion = selectBaselineVersion(
+                v("2.1.3"),
+                vs("1.9.3", "2.0.7", "2.1.0", "2.1.2", "2.1.4", "2.2.0"),
+                Strategy.sameMinor
+        );
+        assertEquals("2.1.2", baselineVersion.toString());
+    }
+
+    @Test
+    public void baselinePreviousMinorVersion() {
+        final ArtifactVersion baselineVersion = selectBaselineVersion(
+                v("2.2.1-SNAPSHOT"),
+                vs("1.9.3", "2.0.7", "2.1.0", "2.1.2", "2.2.0", "2.1.3-SNAPSHOT"),
+                Strategy.previousMinor
+        );
+        assertEquals("2.1.2", baselineVersion.toString());
+    }
+
+    @Test
+    public void baselineLatestAcrossMajorVersions() {
+        final ArtifactVersion baselineVersion = selectBaselineVersion(
+                v("2.1.0-SNAPSHOT"),
+                vs("1.0.0", "1.9.3", "2.0.0-SNAPSHOT", "1.9.4-SNAPSHOT"),
+                Strategy.latest
+        );
+        assertEquals("1.9.3", baselineVersion.toString());
+    }
+
     private ArtifactVersion v(String version) {
         return new DefaultArtifactVersion(version);
     }
@@ -0,0 +1,151 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.DiffPluginImpl;
+import aQute.bnd.header.OSGiHeader;
+import aQute.bnd.osgi.Jar;
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.service.diff.Tree;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import static net.distilledcode.maven.baselining.TestBundles.createBundle;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class BundleArchiveTest {
+
+    private static final String EXPORTS = "org.junit.experimental.categories;version=1.0.0,org.junit.rules;version=1.0.0";
+
+    // Categories extends org.junit.runners.Suite, which is not exported
+    private static final String PRIVATE_PACKAGES = "org.junit.runners,org.junit.runners.model,org.junit.runner";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readEntries() throws Exception {
+        final File file = createBundle(folder.newFile("bundle.jar"), EXPORTS, PRIVATE_PACKAGES);
+        final BundleArchive archive = BundleArchive.open(file, new SystemStreamLog());
+        final JarFile jarFile = new JarFile(file);
+        try {
+            assertEquals("test.api", archive.getManifest().getMainAttributes().getValue("Bundle-SymbolicName"));
+            for (final String name : archive.getEntryNames()) {
+                final ZipEntry entry = jarFile.getEntry(name);
+                assertNotNull(name, entry);
+                assertArrayEquals(name, toBytes(jarFile.getInputStream(entry)), toBytes(archive.openEntry(name)));
+            }
+        } finally {
+            jarFile.close();
+            archive.close();
+        }
+    }
+
+    @Test
+    public void apiJarOnlyContainsExportedClasses() throws Exception {
+        final BundleArchive archive = BundleArchive.open(createBundle(folder.newFile("bundle.jar"), EXPORTS, PRIVATE_PACKAGES), new SystemStreamLog());
+        try {
+            final Jar jar = archive.createApiJar(null);
+            assertNotNull(jar.getResource("org/junit/experimental/categories/Categories.class"));
+            assertNull(jar.getResource("org/junit/runners/Suite.class"));
+
+            final Jar restricted = archive.createApiJar(Collections.singleton("org.junit.rules"));
+            assertNull(restricted.getResource("org/junit/experimental/categories/Categories.class"));
+            assertEquals(Collections.singleton("org.junit.rules"),
+                    OSGiHeader.parseHeader(restricted.getManifest().getMainAttributes().getValue("Export-Package")).keySet());
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void classpathOnlyContainsClassesOutsideApiJar() throws Exception {
+        final BundleArchive archive = BundleArchive.open(createBundle(folder.newFile("bundle.jar"), EXPORTS, PRIVATE_PACKAGES), new SystemStreamLog());
+        try {
+            final Jar jar = archive.createApiJar(Collections.singleton("org.junit.rules"));
+            assertNotNull(jar.getResource("org/junit/rules/TestRule.class"));
+            final Jar classes = archive.createClasspath(jar).get(0);
+            assertNull(classes.getResource("org/junit/rules/TestRule.class"));
+            assertNotNull(classes.getResource("org/junit/experimental/categories/Categories.class"));
+            assertNotNull(classes.getResource("org/junit/runners/Suite.class"));
+            assertNull(classes.getResource("META-INF/MANIFEST.MF"));
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void readZip64Entries() throws Exception {
+        // more than 65535 entries require the ZIP64 end of central directory record
+        final int count = 0x10000 + 10;
+        final File file = folder.newFile("zip64.jar");
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        manifest.getMainAttributes().putValue("Bundle-SymbolicName", "test.zip64");
+        final JarOutputStream out = new JarOutputStream(new FileOutputStream(file), manifest);
+        try {
+            for (int i = 0; i < count; i++) {
+                out.putNextEntry(new ZipEntry("resources/" + i + ".txt"));
+                out.write(String.valueOf(i).getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+
+        final BundleArchive archive = BundleArchive.open(file, new SystemStreamLog());
+        try {
+            assertEquals(count + 1, archive.getEntryNames().size());
+            assertEquals("test.zip64", archive.getManifest().getMainAttributes().getValue("Bundle-SymbolicName"));
+            final String last = "resources/" + (count - 1) + ".txt";
+            assertArrayEquals(String.valueOf(count - 1).getBytes("UTF-8"), toBytes(archive.openEntry(last)));
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void sameApiAsFullJar() throws Exception {
+        final File file = createBundle(folder.newFile("bundle.jar"), EXPORTS, PRIVATE_PACKAGES);
+        final DiffPluginImpl differ = new DiffPluginImpl();
+
+        final Jar jar = new Jar(file);
+        final Tree expected;
+        try {
+            expected = differ.tree(jar);
+        } finally {
+            jar.close();
+        }
+        final ApiTree actual = BaselineTreeCache.createApiTree(file, differ, new SystemStreamLog());
+
+        assertEquals(Delta.UNCHANGED, actual.getTree().get("<api>").diff(expected.get("<api>")).getDelta());
+        assertEquals(Delta.UNCHANGED, actual.getTree().get("<manifest>").diff(expected.get("<manifest>")).getDelta());
+    }
+
+    private static byte[] toBytes(final InputStream in) throws Exception {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
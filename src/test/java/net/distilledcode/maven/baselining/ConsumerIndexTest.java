@@ -0,0 +1,119 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.osgi.Constants;
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.version.Version;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConsumerIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void importsExcludingTheNewVersionAreImpacted() {
+        final ConsumerIndex index = new ConsumerIndex();
+        index.addConsumer("g:narrow", manifest("com.example.api;version=\"[1.0,2)\""));
+        index.addConsumer("g:wide", manifest("com.example.api;version=\"[1.0,3)\""));
+        index.addConsumer("g:unversioned", manifest("com.example.api"));
+        index.addConsumer("g:other", manifest("com.example.other;version=\"[1.0,2)\""));
+
+        final List<ConsumerIndex.Impact> impacts = index.getImpacts("g:api", Collections.singletonList(
+                new PackageResult("com.example.api", Delta.MAJOR, version("1.0.0"), version("1.0.0"), version("2.0.0"), null)));
+        assertEquals(1, impacts.size());
+        final ConsumerIndex.Impact impact = impacts.get(0);
+        assertEquals("g:narrow", impact.getModule());
+        assertEquals("com.example.api", impact.getPackageName());
+        assertEquals("[1.0,2)", impact.getRange());
+        assertEquals("g:api", impact.getExporter());
+        assertEquals(version("2.0.0"), impact.getExportVersion());
+    }
+
+    @Test
+    public void unchangedPackagesAndTheExporterAreIgnored() {
+        final ConsumerIndex index = new ConsumerIndex();
+        index.addConsumer("g:api", manifest("com.example.api;version=\"[1.0,1.1)\""));
+        index.addConsumer("g:consumer", manifest("com.example.internal;version=\"[0.9,1)\""));
+
+        assertTrue(index.getImpacts("g:api", Arrays.asList(
+                new PackageResult("com.example.api", Delta.MINOR, version("1.0.0"), version("1.1.0"), version("1.1.0"), null),
+                new PackageResult("com.example.internal", Delta.UNCHANGED, version("1.0.0"), version("1.0.0"), version("1.0.0"), null)
+        )).isEmpty());
+    }
+
+    @Test
+    public void removedPackagesImpactAllImporters() {
+        final ConsumerIndex index = new ConsumerIndex();
+        index.addConsumer("g:consumer", manifest("com.example.api"));
+
+        final List<ConsumerIndex.Impact> impacts = index.getImpacts("g:api", Collections.singletonList(
+                new PackageResult("com.example.api", Delta.REMOVED, version("1.0.0"), null, null, null)));
+        assertEquals(1, impacts.size());
+        assertNull(impacts.get(0).getExportVersion());
+    }
+
+    @Test
+    public void exportVersion() {
+        // the current version if it is raised beyond the suggested version
+        assertEquals(version("3.0.0"), ConsumerIndex.getExportVersion(
+                new PackageResult("p", Delta.MAJOR, version("1.0.0"), version("3.0.0"), version("2.0.0"), null)));
+        assertEquals(version("2.0.0"), ConsumerIndex.getExportVersion(
+                new PackageResult("p", Delta.MAJOR, version("1.0.0"), version("1.0.0"), version("2.0.0"), null)));
+    }
+
+    @Test
+    public void writesEachModuleOnce() throws Exception {
+        final ConsumerIndex index = new ConsumerIndex();
+        index.addConsumer("g:b", manifest("p1;version=\"[1,2)\",p2;version=\"[1,2)\""));
+        index.addConsumer("g:a", manifest("p1;version=\"[1,2)\""));
+        final List<ConsumerIndex.Impact> impacts = index.getImpacts("g:api", Arrays.asList(
+                new PackageResult("p1", Delta.MAJOR, version("1.0.0"), version("2.0.0"), version("2.0.0"), null),
+                new PackageResult("p2", Delta.MAJOR, version("1.0.0"), version("2.0.0"), version("2.0.0"), null)));
+        assertEquals(3, impacts.size());
+
+        final File file = new File(folder.getRoot(), "target/" + ConsumerIndex.FILE_NAME);
+        ConsumerIndex.write(file, impacts);
+        assertEquals(Arrays.asList("g:a", "g:b"), readLines(file));
+    }
+
+    private static Manifest manifest(final String importPackage) {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue(Constants.IMPORT_PACKAGE, importPackage);
+        return manifest;
+    }
+
+    private static Version version(final String version) {
+        return Version.parseVersion(version);
+    }
+
+    private static List<String> readLines(final File file) throws Exception {
+        final List<String> lines = new ArrayList<String>();
+        final BufferedReader in = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            in.close();
+        }
+        return lines;
+    }
+}
@@ -9,12 +9,15 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class DummyApiIT {
 
-    private static final String GROUP_ID = "net.distilledcode.maven.baselining-maven-plugin.it";
+    static final String GROUP_ID = "net.distilledcode.maven.baselining-maven-plugin.it";
 
     private static final String MAVEN_REPO_LOCAL = "maven.repo.local";
 
@@ -52,6 +55,17 @@ public class DummyApiIT {
         verifier.executeGoal(DEFAULT_GOAL);
         verifier.verifyErrorFreeLog();
         verifier.verifyTextInLog(String.format(BaselineMojo.MSG_BASELINING, "1.0.0"));
+        verifier.verifyTextInLog(BaselineMojo.MSG_NO_API_CHANGES);
+    }
+
+    @Test
+    public void noApiChangesWritesMetrics() throws IOException, VerificationException {
+        final Verifier verifier = createVerifier("dummy-1.0.1-SNAPSHOT");
+        verifier.setSystemProperty("baselining.baseline.metricsFormat", "csv");
+        verifier.executeGoal(DEFAULT_GOAL);
+        verifier.verifyErrorFreeLog();
+        verifier.verifyTextInLog("Baselining took ");
+        verifier.assertFilePresent("target/" + BaselineMetrics.CSV_FILE_NAME);
     }
 
     @Test
@@ -72,6 +86,20 @@ public class DummyApiIT {
         verifier.deleteArtifacts(GROUP_ID, "dummy", "1.0.1-SNAPSHOT");
     }
 
+    @Test
+    public void methodAddedWithPrefetch() throws IOException, VerificationException {
+        final Verifier verifier = createVerifier("dummy-1.0.2-prefetch");
+        try {
+            verifier.executeGoal(DEFAULT_GOAL);
+        } catch (VerificationException e) {
+            // build failure expected
+        }
+        verifier.verifyTextInLog(":prefetch (baseline) @ dummy");
+        verifier.verifyTextInLog(String.format(BaselineMojo.MSG_BASELINING, "1.0.0"));
+        verifier.verifyTextInLog(String.format(BaselineMojo.MSG_RAISE_VERSION, "dummy", "1.1.0", "1.0.0", "1.0.0"));
+        verifier.verifyTextInLog("BUILD FAILURE");
+    }
+
     @Test
     public void requireLowerExportVersion() throws IOException, VerificationException {
         final Verifier verifier = createVerifier("dummy-1.0.2-require-lower-export");
@@ -98,6 +126,83 @@ public class DummyApiIT {
         verifier.verifyTextInLog("BUILD FAILURE");
     }
 
+    @Test
+    public void breakingChangeWritesReport() throws IOException, VerificationException {
+        final Verifier verifier = createVerifier("dummy-1.0.2-breaking-change");
+        verifier.setSystemProperty("baselining.baseline.report", "true");
+        try {
+            verifier.executeGoal(DEFAULT_GOAL);
+        } catch (VerificationException e) {
+            // build failure expected
+        }
+        verifier.verifyTextInLog("BUILD FAILURE");
+        verifier.assertFilePresent("target/" + BaselineReport.FILE_NAME);
+        final List<String> report = verifier.loadLines("target/" + BaselineReport.FILE_NAME, "UTF-8");
+        assertTrue(report.toString(), report.contains("      \"delta\": \"MAJOR\","));
+    }
+
+    @Test
+    public void breakingChangeInLowMemoryMode() throws IOException, VerificationException {
+        final Verifier verifier = createVerifier("dummy-1.0.2-breaking-change");
+        verifier.setSystemProperty("baselining.baseline.lowMemory", "true");
+        try {
+            verifier.executeGoal(DEFAULT_GOAL);
+        } catch (VerificationException e) {
+            // build failure expected
+        }
+        verifier.verifyTextInLog(String.format(BaselineMojo.MSG_RAISE_VERSION, "dummy", "2.0.0", "1.0.0", "1.0.0"));
+        verifier.verifyTextInLog("BUILD FAILURE");
+    }
+
+    @Test
+    public void breakingChangeAgainstApiSignature() throws IOException, VerificationException {
+        final Verifier verifier0 = createVerifier("dummy-signature-1.0.0");
+        verifier0.executeGoal("install");
+        verifier0.verifyErrorFreeLog();
+        verifier0.assertFilePresent(verifier0.getArtifactPath(GROUP_ID, "dummy-signature", "1.0.0",
+                ApiSignature.TYPE, ApiSignature.CLASSIFIER));
+        // only the signature is left to baseline against
+        final File baselineBundle = new File(verifier0.getArtifactPath(GROUP_ID, "dummy-signature", "1.0.0", "jar"));
+        assertTrue(baselineBundle.delete());
+
+        final Verifier verifier = createVerifier("dummy-signature-1.0.2-breaking-change");
+        try {
+            verifier.executeGoal(DEFAULT_GOAL);
+        } catch (VerificationException e) {
+            // build failure expected
+        }
+        verifier.verifyTextInLog(String.format(BaselineMojo.MSG_BASELINING, "1.0.0"));
+        verifier.verifyTextInLog(String.format(BaselineMojo.MSG_RAISE_VERSION, "dummy", "2.0.0", "1.0.0", "1.0.0"));
+        verifier.verifyTextInLog("BUILD FAILURE");
+
+        // cleanup installed artifacts
+        verifier.deleteArtifacts(GROUP_ID, "dummy-signature", "1.0.0");
+    }
+
+    @Test
+    public void breakingChangeInClasses() throws IOException, VerificationException {
+        final Verifier verifier = createVerifier("dummy-1.0.2-breaking-change-classes");
+        try {
+            verifier.executeGoal("process-classes");
+        } catch (VerificationException e) {
+            // build failure expected
+        }
+        verifier.verifyTextInLog(String.format(BaselineMojo.MSG_BASELINING, "1.0.0"));
+        verifier.verifyTextInLog(String.format(BaselineMojo.MSG_RAISE_VERSION, "dummy", "2.0.0", "1.0.0", "1.0.0"));
+        verifier.verifyTextInLog("BUILD FAILURE");
+        verifier.assertFilePresent("target/" + BaselineClassesMojo.FILE_NAME);
+    }
+
+    @Test
+    public void excludedPackages() throws IOException, VerificationException {
+        final Verifier verifier = createVerifier("dummy-1.0.2-breaking-change");
+        verifier.setSystemProperty("baselining.baseline.excludePackages", "dumm*");
+        verifier.executeGoal(DEFAULT_GOAL);
+        verifier.verifyErrorFreeLog();
+        verifier.verifyTextInLog(String.format(BaselineMojo.MSG_BASELINING, "1.0.0"));
+        verifier.verifyTextInLog(BaselineMojo.MSG_NO_PACKAGES);
+    }
+
     @Test
     public void enforceBundleVersion() throws IOException, VerificationException {
         final Verifier verifier = createVerifier("dummy-1.0.2-wrong-bundle-version");
@@ -112,7 +217,24 @@ public class DummyApiIT {
         verifier.verifyTextInLog("BUILD FAILURE");
     }
 
-    private static Verifier createVerifier(final String testFolderName) throws IOException, VerificationException {
+    @Test
+    public void aggregateBreakingChange() throws IOException, VerificationException {
+        final Verifier verifier = createVerifier("dummy-aggregate");
+        try {
+            verifier.executeGoal(DEFAULT_GOAL);
+        } catch (VerificationException e) {
+            // build failure expected
+        }
+        verifier.verifyTextInLog("[dummy] " + String.format(BaselineMojo.MSG_BASELINING, "1.0.0"));
+        verifier.verifyTextInLog("[dummy] " + String.format(BaselineMojo.MSG_RAISE_VERSION, "dummy", "2.0.0", "1.0.0", "1.0.0"));
+        verifier.verifyTextInLog(GROUP_ID + ":dummy:bundle:1.0.2:");
+        verifier.verifyTextInLog(String.format(BaselineAggregateMojo.MSG_IMPACTED, GROUP_ID + ":consumer", "dummy", "[1.0,2)", "2.0.0"));
+        verifier.verifyTextInLog("BUILD FAILURE");
+        final List<String> impactedModules = verifier.loadLines("aggregate/target/" + ConsumerIndex.FILE_NAME, "UTF-8");
+        assertEquals(asList(GROUP_ID + ":consumer"), impactedModules);
+    }
+
+    static Verifier createVerifier(final String testFolderName) throws IOException, VerificationException {
         final File testDir = ResourceExtractor.simpleExtractResources(DummyApiIT.class, "/" + testFolderName);
         final File settingsXml = new File(testDir.getParent(), "settings.xml");
 
@@ -0,0 +1,79 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.DiffPluginImpl;
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.service.diff.Diff;
+import aQute.bnd.service.diff.Tree;
+import aQute.bnd.service.diff.Type;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExplanationWriterTest {
+
+    @Test
+    public void explainFindings() throws Exception {
+        final RecordingLog log = new RecordingLog();
+        final ExplanationWriter writer = new ExplanationWriter(log, 0);
+        writer.explain(createDiff());
+        writer.finish();
+
+        assertEquals(Arrays.asList(
+                "minor:   added method Foo#added()",
+                "minor:   added return java.lang.String from Foo#changed(Bar,int)",
+                "major: removed return Bar from Foo#changed(Bar,int)",
+                "major: removed method Foo#removed(java.lang.String)"
+        ), log.lines);
+    }
+
+    @Test
+    public void limitFindings() throws Exception {
+        final RecordingLog log = new RecordingLog();
+        final ExplanationWriter writer = new ExplanationWriter(log, 1);
+        writer.explain(createDiff());
+        writer.finish();
+
+        assertEquals(Arrays.asList(
+                "minor:   added method Foo#added()",
+                "... and 3 more findings (limited to 1 via \"baselining.baseline.explainLimit\")"
+        ), log.lines);
+    }
+
+    private static Diff createDiff() throws Exception {
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        final Tree newer = differ.deserialize(data(Type.PACKAGE, "p",
+                data(Type.CLASS, "p.Foo",
+                        data(Type.METHOD, "added()"),
+                        data(Type.METHOD, "changed(p.Bar,int)", data(Type.RETURN, "java.lang.String")))));
+        final Tree older = differ.deserialize(data(Type.PACKAGE, "p",
+                data(Type.CLASS, "p.Foo",
+                        data(Type.METHOD, "removed(java.lang.String)"),
+                        data(Type.METHOD, "changed(p.Bar,int)", data(Type.RETURN, "p.Bar")))));
+        return newer.diff(older);
+    }
+
+    private static Tree.Data data(final Type type, final String name, final Tree.Data... children) {
+        final Tree.Data data = new Tree.Data();
+        data.type = type;
+        data.name = name;
+        data.add = Delta.MINOR;
+        data.rem = Delta.MAJOR;
+        data.children = children;
+        return data;
+    }
+
+    private static class RecordingLog extends SystemStreamLog {
+
+        private final List<String> lines = new ArrayList<String>();
+
+        @Override
+        public void info(final CharSequence content) {
+            lines.add(content.toString());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.version.Version;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static net.distilledcode.maven.baselining.TestBundles.createBundle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalStateTest {
+
+    private static final String BASELINE_KEY = "test:test.api:jar:1.0.0:42:1";
+
+    private static final String EXPORTS = "org.junit.rules;version=1.0.0,org.junit.runner;version=1.0.0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void unchangedBundle() throws Exception {
+        final PackageDigests digests = PackageDigests.compute(createBundle(folder.newFile("bundle.jar"), EXPORTS), new SystemStreamLog());
+        final IncrementalState state = new IncrementalState(BASELINE_KEY, digests, createResult(digests));
+        assertEquals(Collections.<String>emptySet(), state.getDirtyPackages(BASELINE_KEY, digests));
+    }
+
+    @Test
+    public void differentBaseline() throws Exception {
+        final PackageDigests digests = PackageDigests.compute(createBundle(folder.newFile("bundle.jar"), EXPORTS), new SystemStreamLog());
+        final IncrementalState state = new IncrementalState(BASELINE_KEY, digests, createResult(digests));
+        assertNull(state.getDirtyPackages("test:test.api:jar:1.0.1:42:1", digests));
+    }
+
+    @Test
+    public void changedPrivateClasses() throws Exception {
+        final PackageDigests digests = PackageDigests.compute(createBundle(folder.newFile("older.jar"), EXPORTS), new SystemStreamLog());
+        final PackageDigests current = PackageDigests.compute(createBundle(folder.newFile("newer.jar"), EXPORTS, "org.junit.matchers"), new SystemStreamLog());
+        final IncrementalState state = new IncrementalState(BASELINE_KEY, digests, createResult(digests));
+        assertNull(state.getDirtyPackages(BASELINE_KEY, current));
+    }
+
+    @Test
+    public void packagesUsingDirtyPackagesAreDirty() throws Exception {
+        final PackageDigests digests = PackageDigests.compute(createBundle(folder.newFile("older.jar"), EXPORTS), new SystemStreamLog());
+        final PackageDigests current = PackageDigests.compute(createBundle(folder.newFile("newer.jar"),
+                "org.junit.rules;version=1.0.0,org.junit.runner;version=1.1.0"), new SystemStreamLog());
+        final IncrementalState state = new IncrementalState(BASELINE_KEY, digests, createResult(digests));
+        final Set<String> dirty = state.getDirtyPackages(BASELINE_KEY, current);
+        assertNotNull(dirty);
+        assertTrue(dirty.contains("org.junit.runner"));
+        assertTrue("org.junit.rules uses org.junit.runner", dirty.contains("org.junit.rules"));
+    }
+
+    @Test
+    public void storeAndLoad() throws Exception {
+        final PackageDigests digests = PackageDigests.compute(createBundle(folder.newFile("bundle.jar"), EXPORTS), new SystemStreamLog());
+        final File file = new File(folder.getRoot(), IncrementalState.FILE_NAME);
+        new IncrementalState(BASELINE_KEY, digests, createResult(digests)).store(file);
+
+        final IncrementalState state = IncrementalState.load(file, new SystemStreamLog());
+        assertNotNull(state);
+        assertEquals(Collections.<String>emptySet(), state.getDirtyPackages(BASELINE_KEY, digests));
+
+        final BaselineResult merged = state.merge(Collections.<String>emptySet(), null, digests.getBundleVersion());
+        assertEquals(2, merged.getPackages().size());
+        assertEquals(Delta.UNCHANGED, merged.getPackage("org.junit.rules").getDelta());
+        assertEquals(new Version(1, 0, 1), merged.getSuggestedVersion());
+    }
+
+    private static BaselineResult createResult(final PackageDigests digests) {
+        final Version version = new Version(1, 0, 0);
+        final List<PackageResult> packageResults = new ArrayList<PackageResult>();
+        for (final String packageName : digests.getExports().keySet()) {
+            packageResults.add(new PackageResult(packageName, Delta.UNCHANGED, version, version, version, null));
+        }
+        return new BaselineResult(packageResults, version, version,
+                BaselineResult.suggestBundleVersion(packageResults, version));
+    }
+}
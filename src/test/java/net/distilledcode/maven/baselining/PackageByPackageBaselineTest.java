@@ -0,0 +1,88 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.DiffPluginImpl;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Iterator;
+
+import static net.distilledcode.maven.baselining.TestBundles.createBundle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class PackageByPackageBaselineTest {
+
+    private static final String OLDER_EXPORTS =
+            "org.junit.rules;version=1.0.0,org.junit.runner;version=1.0.0,org.junit.matchers;version=1.0.0";
+
+    private static final String NEWER_EXPORTS =
+            "org.junit.rules;version=1.0.0,org.junit.runner;version=1.1.0,org.junit.runners;version=1.0.0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void resultEqualsCompleteDiff() throws Exception {
+        final File olderFile = createBundle(folder.newFile("api-1.0.0.jar"), OLDER_EXPORTS);
+        final File newerFile = createBundle(folder.newFile("api-1.1.0.jar"), NEWER_EXPORTS);
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        final BaselineResult expected = ParallelBaseline.baseline(differ,
+                BaselineTreeCache.createApiTree(newerFile, differ, new SystemStreamLog()), BaselineTreeCache.createApiTree(olderFile, differ, new SystemStreamLog()), null, 1);
+
+        final BaselineResult actual = baseline(newerFile, olderFile, true);
+        assertEquals(4, actual.getPackages().size());
+        assertEquals(expected.getOlderVersion(), actual.getOlderVersion());
+        assertEquals(expected.getNewerVersion(), actual.getNewerVersion());
+        assertEquals(expected.getSuggestedVersion(), actual.getSuggestedVersion());
+        final Iterator<PackageResult> actualPackages = actual.getPackages().iterator();
+        for (final PackageResult expectedPackage : expected.getPackages()) {
+            final PackageResult actualPackage = actualPackages.next();
+            assertEquals(expectedPackage.getPackageName(), actualPackage.getPackageName());
+            assertEquals(expectedPackage.getPackageName(), expectedPackage.getDelta(), actualPackage.getDelta());
+            assertEquals(expectedPackage.getPackageName(), expectedPackage.getSuggestedVersion(), actualPackage.getSuggestedVersion());
+        }
+        // the removed package needs to be explained, the unchanged package does not
+        assertNotNull(actual.getPackage("org.junit.matchers").getDiff());
+        assertNull(actual.getPackage("org.junit.rules").getDiff());
+    }
+
+    @Test
+    public void diffsAreReleased() throws Exception {
+        final BaselineResult result = baseline(createBundle(folder.newFile("api-1.1.0.jar"), NEWER_EXPORTS),
+                createBundle(folder.newFile("api-1.0.0.jar"), OLDER_EXPORTS), false);
+        for (final PackageResult packageResult : result.getPackages()) {
+            assertNull(packageResult.getPackageName(), packageResult.getDiff());
+        }
+    }
+
+    @Test
+    public void selectedPackagesOnly() throws Exception {
+        final BundleArchive newer = BundleArchive.open(createBundle(folder.newFile("api-1.1.0.jar"), NEWER_EXPORTS), new SystemStreamLog());
+        final BundleArchive older = BundleArchive.open(createBundle(folder.newFile("api-1.0.0.jar"), OLDER_EXPORTS), new SystemStreamLog());
+        try {
+            final BaselineResult result = PackageByPackageBaseline.baseline(new DiffPluginImpl(), newer, older,
+                    Collections.singleton("org.junit.runner"), false, new BaselineMetrics());
+            assertEquals(1, result.getPackages().size());
+            assertNotNull(result.getPackage("org.junit.runner"));
+        } finally {
+            newer.close();
+            older.close();
+        }
+    }
+
+    private static BaselineResult baseline(final File newerFile, final File olderFile, final boolean keepDiffs) throws Exception {
+        final BundleArchive newer = BundleArchive.open(newerFile, new SystemStreamLog());
+        final BundleArchive older = BundleArchive.open(olderFile, new SystemStreamLog());
+        try {
+            return PackageByPackageBaseline.baseline(new DiffPluginImpl(), newer, older, null, keepDiffs, new BaselineMetrics());
+        } finally {
+            newer.close();
+            older.close();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static net.distilledcode.maven.baselining.TestBundles.createBundle;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PackageDigestsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void identicalClassesAndExports() throws Exception {
+        final File older = createBundle(folder.newFile("older.jar"), "org.junit.rules;version=1.0.0");
+        final File newer = createBundle(folder.newFile("newer.jar"), "org.junit.rules;version=\"1.0\"");
+        assertTrue(PackageDigests.compute(newer, new SystemStreamLog()).hasSameApi(PackageDigests.compute(older, new SystemStreamLog())));
+    }
+
+    @Test
+    public void differentExportVersion() throws Exception {
+        final File older = createBundle(folder.newFile("older.jar"), "org.junit.rules;version=1.0.0");
+        final File newer = createBundle(folder.newFile("newer.jar"), "org.junit.rules;version=1.1.0");
+        assertFalse(PackageDigests.compute(newer, new SystemStreamLog()).hasSameApi(PackageDigests.compute(older, new SystemStreamLog())));
+    }
+
+    @Test
+    public void differentExports() throws Exception {
+        final File older = createBundle(folder.newFile("older.jar"), "org.junit.rules;version=1.0.0");
+        final File newer = createBundle(folder.newFile("newer.jar"), "org.junit.rules;version=1.0.0,org.junit.matchers;version=1.0.0");
+        assertFalse(PackageDigests.compute(newer, new SystemStreamLog()).hasSameApi(PackageDigests.compute(older, new SystemStreamLog())));
+    }
+
+    @Test
+    public void differentPrivateClasses() throws Exception {
+        final File older = createBundle(folder.newFile("older.jar"), "org.junit.rules;version=1.0.0");
+        final File newer = createBundle(folder.newFile("newer.jar"), "org.junit.rules;version=1.0.0", "org.junit.matchers");
+        assertFalse(PackageDigests.compute(newer, new SystemStreamLog()).hasSameApi(PackageDigests.compute(older, new SystemStreamLog())));
+    }
+}
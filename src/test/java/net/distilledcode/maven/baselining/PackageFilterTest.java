@@ -0,0 +1,38 @@
+package net.distilledcode.maven.baselining;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PackageFilterTest {
+
+    @Test
+    public void emptyFilterMatchesAllPackages() {
+        final PackageFilter filter = new PackageFilter(null, Collections.<String>emptyList());
+        assertTrue(filter.isEmpty());
+        assertTrue(filter.matches("com.example.api"));
+    }
+
+    @Test
+    public void includesAndExcludes() {
+        final PackageFilter filter = new PackageFilter(Arrays.asList("com.example.*"), Arrays.asList("*.internal"));
+        assertFalse(filter.isEmpty());
+        assertTrue(filter.matches("com.example"));
+        assertTrue(filter.matches("com.example.api"));
+        assertFalse(filter.matches("com.example.api.internal"));
+        assertFalse(filter.matches("org.example.api"));
+    }
+
+    @Test
+    public void excludesOnly() {
+        final PackageFilter filter = new PackageFilter(null, Arrays.asList("com.example.impl"));
+        assertEquals(Arrays.asList("com.example.api", "com.example.spi"),
+                Arrays.asList(filter.select(Arrays.asList("com.example.spi", "com.example.impl", "com.example.api"))
+                        .toArray(new String[0])));
+    }
+}
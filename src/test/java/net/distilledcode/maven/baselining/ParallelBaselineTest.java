@@ -0,0 +1,79 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.DiffPluginImpl;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static net.distilledcode.maven.baselining.TestBundles.createBundle;
+import static org.junit.Assert.assertEquals;
+
+public class ParallelBaselineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void partitionsRoundRobin() {
+        final Set<String> packages = new LinkedHashSet<String>(Arrays.asList("a", "b", "c", "d", "e"));
+        final List<Set<String>> partitions = ParallelBaseline.partition(packages, 2, 1);
+        assertEquals(2, partitions.size());
+        assertEquals(Arrays.asList("a", "c", "e"), new ArrayList<String>(partitions.get(0)));
+        assertEquals(Arrays.asList("b", "d"), new ArrayList<String>(partitions.get(1)));
+
+        assertEquals(2, ParallelBaseline.partition(new LinkedHashSet<String>(Arrays.asList("a", "b")), 8, 1).size());
+        assertEquals(1, ParallelBaseline.partition(Collections.<String>emptySet(), 8, 1).size());
+    }
+
+    @Test
+    public void partitionsHaveMinimumSize() {
+        final Set<String> packages = new LinkedHashSet<String>(Arrays.asList("a", "b", "c", "d", "e"));
+        assertEquals(2, ParallelBaseline.partition(packages, 8, 2).size());
+        assertEquals(1, ParallelBaseline.partition(packages, 8, 3).size());
+        assertEquals(1, ParallelBaseline.partition(packages, 8, ParallelBaseline.MIN_PACKAGES_PER_PARTITION).size());
+    }
+
+    @Test
+    public void partitionedResultEqualsSequentialResult() throws Exception {
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        final ApiTree older = BaselineTreeCache.createApiTree(createBundle(folder.newFile("api-1.0.0.jar"),
+                "org.junit.rules;version=1.0.0,org.junit.runner;version=1.0.0,org.junit.matchers;version=1.0.0"), differ, new SystemStreamLog());
+        final ApiTree newer = BaselineTreeCache.createApiTree(createBundle(folder.newFile("api-1.1.0.jar"),
+                "org.junit.rules;version=1.0.0,org.junit.runner;version=1.1.0,org.junit.runners;version=1.0.0,"
+                        + "org.junit.experimental;version=1.0.0"), differ, new SystemStreamLog());
+
+        final BaselineResult sequential = ParallelBaseline.baseline(differ, newer, older, null, 1);
+        final BaselineResult partitioned = ParallelBaseline.baseline(differ, newer, older, null, 3, 1);
+        assertEquals(5, sequential.getPackages().size());
+        assertSameResult(sequential, partitioned);
+
+        final Set<String> packages = new LinkedHashSet<String>(Arrays.asList("org.junit.rules", "org.junit.matchers"));
+        assertSameResult(ParallelBaseline.baseline(differ, newer, older, packages, 1),
+                ParallelBaseline.baseline(differ, newer, older, packages, 2, 1));
+    }
+
+    private static void assertSameResult(final BaselineResult expected, final BaselineResult actual) {
+        assertEquals(expected.getOlderVersion(), actual.getOlderVersion());
+        assertEquals(expected.getNewerVersion(), actual.getNewerVersion());
+        assertEquals(expected.getSuggestedVersion(), actual.getSuggestedVersion());
+        assertEquals(expected.getPackages().size(), actual.getPackages().size());
+        final Iterator<PackageResult> actualPackages = actual.getPackages().iterator();
+        for (final PackageResult expectedPackage : expected.getPackages()) {
+            final PackageResult actualPackage = actualPackages.next();
+            assertEquals(expectedPackage.getPackageName(), actualPackage.getPackageName());
+            assertEquals(expectedPackage.getPackageName(), expectedPackage.getDelta(), actualPackage.getDelta());
+            assertEquals(expectedPackage.getPackageName(), expectedPackage.getOlderVersion(), actualPackage.getOlderVersion());
+            assertEquals(expectedPackage.getPackageName(), expectedPackage.getNewerVersion(), actualPackage.getNewerVersion());
+            assertEquals(expectedPackage.getPackageName(), expectedPackage.getSuggestedVersion(), actualPackage.getSuggestedVersion());
+        }
+    }
+}
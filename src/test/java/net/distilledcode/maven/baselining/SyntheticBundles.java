@@ -0,0 +1,253 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.osgi.Builder;
+import aQute.bnd.osgi.Jar;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Generates pairs of bundles with a configurable shape, the same way the
+ * {@code src/test/resources/dummy-*} fixtures are built: java sources are compiled and
+ * packaged by bnd according to an {@code Export-Package} instruction.
+ *
+ * The newer version of a bundle adds a method to a share of the classes, a minor change,
+ * and removes a method from another share of the classes, a major change. The changed
+ * classes are spread evenly across the packages, hence the generated bundles are the same
+ * for the same {@link Shape}. Both versions export all packages with version 1.0.0.
+ */
+public class SyntheticBundles {
+
+    public static final String SYMBOLIC_NAME = "net.distilledcode.maven.baselining.synthetic";
+
+    public static final String PACKAGE_PREFIX = "synthetic.api.p";
+
+    private static final int CLASSES_PER_PACKAGE = 50;
+
+    private SyntheticBundles() {
+    }
+
+    /**
+     * Returns the older version of a bundle with the given number of exported classes,
+     * generating it in {@code directory} if necessary. The newer version adds a method to
+     * every class and removes a method from every other class.
+     */
+    public static File older(final File directory, final int classes) throws Exception {
+        return older(directory, Shape.ofClasses(classes));
+    }
+
+    /**
+     * Returns the newer version of a bundle with the given number of exported classes,
+     * generating it in {@code directory} if necessary.
+     */
+    public static File newer(final File directory, final int classes) throws Exception {
+        return newer(directory, Shape.ofClasses(classes));
+    }
+
+    /**
+     * Returns the older version of a bundle with the given shape, generating it in
+     * {@code directory} if necessary.
+     */
+    public static File older(final File directory, final Shape shape) throws Exception {
+        return create(new File(directory, shape.getName() + "/older.jar"), shape, false);
+    }
+
+    /**
+     * Returns the newer version of a bundle with the given shape, generating it in
+     * {@code directory} if necessary.
+     */
+    public static File newer(final File directory, final Shape shape) throws Exception {
+        return create(new File(directory, shape.getName() + "/newer.jar"), shape, true);
+    }
+
+    private static File create(final File bundle, final Shape shape, final boolean newer) throws Exception {
+        if (bundle.isFile()) {
+            return bundle;
+        }
+        final File work = new File(bundle.getParentFile(), newer ? "newer" : "older");
+        final File sources = new File(work, "src");
+        final File output = new File(work, "classes");
+        output.mkdirs();
+
+        final List<File> sourceFiles = new ArrayList<File>();
+        for (int i = 0; i < shape.getClasses(); i++) {
+            sourceFiles.add(writeClass(sources, shape, i, newer));
+        }
+        compile(sourceFiles, output);
+
+        final Builder builder = new Builder();
+        try {
+            builder.addClasspath(output);
+            builder.setProperty("Bundle-SymbolicName", SYMBOLIC_NAME);
+            builder.setProperty("Bundle-Version", newer ? "1.0.1" : "1.0.0");
+            builder.setProperty("Export-Package", PACKAGE_PREFIX + "*;version=1.0.0");
+            final Jar jar = builder.build();
+            try {
+                jar.write(bundle);
+            } finally {
+                jar.close();
+            }
+        } finally {
+            builder.close();
+        }
+        return bundle;
+    }
+
+    private static File writeClass(final File sources, final Shape shape, final int index, final boolean newer)
+            throws IOException {
+        final String packageName = PACKAGE_PREFIX + (index / shape.getClassesPerPackage());
+        final String className = "Type" + index;
+        final File file = new File(sources, packageName.replace('.', '/') + "/" + className + ".java");
+        file.getParentFile().mkdirs();
+
+        final int methods = newer && shape.isBroken(index) ? shape.getMethodsPerClass() - 1 : shape.getMethodsPerClass();
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write("package " + packageName + ";\n\n");
+            out.write("public class " + className + " implements java.io.Serializable {\n");
+            out.write("    public static final int CONSTANT = " + index + ";\n");
+            out.write("    public String name;\n");
+            for (int i = 0; i < methods; i++) {
+                switch (i % 3) {
+                    case 0:
+                        out.write("    public String method" + i + "(int count, String value) { return value + count; }\n");
+                        break;
+                    case 1:
+                        out.write("    public " + className + " self" + i + "(java.util.Map<String, Integer> values) { return this; }\n");
+                        break;
+                    default:
+                        out.write("    public java.util.List<String> list" + i + "(" + className + " other, long size) { return null; }\n");
+                }
+            }
+            if (newer && shape.isChanged(index)) {
+                out.write("    public String added(" + className + " other) { return name; }\n");
+            }
+            out.write("}\n");
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static void compile(final List<File> sourceFiles, final File output) throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("Generating bundles requires a JDK");
+        }
+        final StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        try {
+            final Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(sourceFiles);
+            final List<String> options = Arrays.asList("-d", output.getPath(), "-nowarn", "-g:none");
+            if (!compiler.getTask(null, fileManager, null, options, null, units).call()) {
+                throw new IllegalStateException("Failed to compile synthetic sources");
+            }
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    /**
+     * The shape of a pair of synthetic bundles: the number of exported packages, of classes
+     * per package and of methods per class, and the share of classes changed in the newer
+     * version.
+     */
+    public static class Shape {
+
+        private final int packages;
+
+        private final int classesPerPackage;
+
+        private final int methodsPerClass;
+
+        private final double changeRate;
+
+        private final double breakingChangeRate;
+
+        /**
+         * @param changeRate         the share of classes with an added method, between 0 and 1
+         * @param breakingChangeRate the share of classes with a removed method, between 0 and 1
+         */
+        public Shape(final int packages, final int classesPerPackage, final int methodsPerClass,
+                     final double changeRate, final double breakingChangeRate) {
+            if (packages < 1 || classesPerPackage < 1 || methodsPerClass < 1) {
+                throw new IllegalArgumentException("Bundles need at least one package, class and method");
+            }
+            if (changeRate < 0 || changeRate > 1 || breakingChangeRate < 0 || breakingChangeRate > 1) {
+                throw new IllegalArgumentException("Change rates need to be between 0 and 1");
+            }
+            this.packages = packages;
+            this.classesPerPackage = classesPerPackage;
+            this.methodsPerClass = methodsPerClass;
+            this.changeRate = changeRate;
+            this.breakingChangeRate = breakingChangeRate;
+        }
+
+        /**
+         * The shape of the bundles generated by {@link SyntheticBundles#older(File, int)} and
+         * {@link SyntheticBundles#newer(File, int)}: every class is changed, every other class is broken.
+         */
+        static Shape ofClasses(final int classes) {
+            final int packages = Math.max(1, (classes + CLASSES_PER_PACKAGE - 1) / CLASSES_PER_PACKAGE);
+            return new Shape(packages, Math.max(1, classes / packages), 3, 1, 0.5);
+        }
+
+        public int getPackages() {
+            return packages;
+        }
+
+        public int getClassesPerPackage() {
+            return classesPerPackage;
+        }
+
+        public int getMethodsPerClass() {
+            return methodsPerClass;
+        }
+
+        public int getClasses() {
+            return packages * classesPerPackage;
+        }
+
+        /**
+         * @return {@code true} if a method is added to the class in the newer version
+         */
+        boolean isChanged(final int index) {
+            return isSelected(index, changeRate);
+        }
+
+        /**
+         * @return {@code true} if a method is removed from the class in the newer version
+         */
+        boolean isBroken(final int index) {
+            return isSelected(index, breakingChangeRate);
+        }
+
+        // selects floor(classes * rate) classes, spread evenly
+        private static boolean isSelected(final int index, final double rate) {
+            return Math.floor((index + 1) * rate) > Math.floor(index * rate);
+        }
+
+        /**
+         * @return a name identifying the shape, e.g. for the directory of the generated bundles
+         */
+        public String getName() {
+            return String.format(Locale.ROOT, "p%d-c%d-m%d-a%s-r%s", packages, classesPerPackage, methodsPerClass,
+                    changeRate, breakingChangeRate);
+        }
+
+        @Override
+        public String toString() {
+            return getName();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.differ.DiffPluginImpl;
+import aQute.bnd.service.diff.Delta;
+import aQute.bnd.version.Version;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyntheticBundlesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void changedClassesAreSpreadEvenly() {
+        final SyntheticBundles.Shape shape = new SyntheticBundles.Shape(10, 100, 3, 0.1, 0.02);
+        int changed = 0;
+        int broken = 0;
+        for (int i = 0; i < shape.getClasses(); i++) {
+            changed += shape.isChanged(i) ? 1 : 0;
+            broken += shape.isBroken(i) ? 1 : 0;
+        }
+        assertEquals(100, changed);
+        assertEquals(20, broken);
+        assertTrue(shape.isChanged(9));
+        assertFalse(shape.isChanged(10));
+    }
+
+    @Test
+    public void legacyShape() {
+        final SyntheticBundles.Shape shape = SyntheticBundles.Shape.ofClasses(10000);
+        assertEquals(200, shape.getPackages());
+        assertEquals(10000, shape.getClasses());
+        assertEquals(10, SyntheticBundles.Shape.ofClasses(10).getClasses());
+    }
+
+    @Test
+    public void baselineReportsChangesPerPackage() throws Exception {
+        // classes 2 and 4 of p0 and 7 and 9 of p1 gain a method, class 9 loses one
+        final SyntheticBundles.Shape shape = new SyntheticBundles.Shape(2, 5, 4, 0.4, 0.1);
+        final File directory = folder.getRoot();
+        final DiffPluginImpl differ = new DiffPluginImpl();
+        final BaselineResult result = ParallelBaseline.baseline(differ,
+                BaselineTreeCache.createApiTree(SyntheticBundles.newer(directory, shape), differ, new SystemStreamLog()),
+                BaselineTreeCache.createApiTree(SyntheticBundles.older(directory, shape), differ, new SystemStreamLog()), null, 1);
+
+        assertEquals(2, result.getPackages().size());
+        final PackageResult minor = result.getPackage(SyntheticBundles.PACKAGE_PREFIX + "0");
+        assertEquals(Delta.MINOR, minor.getDelta());
+        assertEquals(Version.parseVersion("1.1.0"), minor.getSuggestedVersion());
+        final PackageResult major = result.getPackage(SyntheticBundles.PACKAGE_PREFIX + "1");
+        assertEquals(Delta.MAJOR, major.getDelta());
+        assertEquals(Version.parseVersion("2.0.0"), major.getSuggestedVersion());
+    }
+}
@@ -0,0 +1,39 @@
+package net.distilledcode.maven.baselining;
+
+import aQute.bnd.osgi.Builder;
+import aQute.bnd.osgi.Jar;
+import org.junit.Test;
+
+import java.io.File;
+
+/**
+ * Creates bundles for tests from the classes of the JUnit JAR.
+ */
+class TestBundles {
+
+    private TestBundles() {
+    }
+
+    static File createBundle(final File file, final String exportPackage) throws Exception {
+        return createBundle(file, exportPackage, null);
+    }
+
+    static File createBundle(final File file, final String exportPackage, final String privatePackage) throws Exception {
+        final Builder builder = new Builder();
+        try {
+            builder.addClasspath(new File(Test.class.getProtectionDomain().getCodeSource().getLocation().toURI()));
+            builder.setProperty("Bundle-SymbolicName", "test.api");
+            builder.setProperty("Bundle-Version", "1.0.0");
+            builder.setProperty("Export-Package", exportPackage);
+            if (privatePackage != null) {
+                builder.setProperty("Private-Package", privatePackage);
+            }
+            final Jar jar = builder.build();
+            jar.write(file);
+            jar.close();
+        } finally {
+            builder.close();
+        }
+        return file;
+    }
+}
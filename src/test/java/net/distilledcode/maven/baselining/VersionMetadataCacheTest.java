@@ -0,0 +1,117 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class VersionMetadataCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File cacheDirectory;
+
+    private File localRepository;
+
+    private final Artifact artifact = new DefaultArtifact("test", "api", "1.0.2", "compile", "jar", null, new DefaultArtifactHandler("jar"));
+
+    @Before
+    public void setup() throws Exception {
+        cacheDirectory = folder.newFolder("cache");
+        localRepository = folder.newFolder("repository");
+    }
+
+    @Test
+    public void parseTtl() {
+        assertEquals(500, VersionMetadataCache.parseTtl("500ms"));
+        assertEquals(90 * 1000, VersionMetadataCache.parseTtl("90"));
+        assertEquals(90 * 1000, VersionMetadataCache.parseTtl("90s"));
+        assertEquals(30 * 60 * 1000, VersionMetadataCache.parseTtl("30m"));
+        assertEquals(60 * 60 * 1000, VersionMetadataCache.parseTtl("1h"));
+        assertEquals(24 * 60 * 60 * 1000, VersionMetadataCache.parseTtl("1d"));
+        assertEquals(0, VersionMetadataCache.parseTtl("0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseInvalidTtl() {
+        VersionMetadataCache.parseTtl("one hour");
+    }
+
+    @Test
+    public void cachedVersions() {
+        final VersionMetadataCache cache = cache(60 * 1000);
+        assertNull(cache.get(artifact));
+        cache.put(artifact, vs("1.0.0", "1.0.1"));
+        assertEquals(vs("1.0.0", "1.0.1"), cache.get(artifact));
+    }
+
+    @Test
+    public void expiredVersions() throws Exception {
+        cache(60 * 1000).put(artifact, vs("1.0.0", "1.0.1"));
+        Thread.sleep(10);
+        assertNull(cache(1).get(artifact));
+    }
+
+    @Test
+    public void localReleaseInvalidatesVersions() throws Exception {
+        final VersionMetadataCache cache = cache(60 * 1000);
+        cache.put(artifact, vs("1.0.0", "1.0.1"));
+
+        installLocally("1.0.1");
+        installLocally("1.0.2-SNAPSHOT");
+        assertEquals(vs("1.0.0", "1.0.1"), cache.get(artifact));
+
+        installLocally("1.0.2");
+        assertNull(cache.get(artifact));
+    }
+
+    @Test
+    public void corruptTimestamp() throws Exception {
+        final VersionMetadataCache cache = cache(60 * 1000);
+        cache.put(artifact, vs("1.0.0", "1.0.1"));
+        final File file = cache.getCacheFile(artifact);
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1");
+        try {
+            out.write("timestamp=14x\nversions=1.0.0,1.0.1\n");
+        } finally {
+            out.close();
+        }
+        assertNull(cache.get(artifact));
+    }
+
+    private VersionMetadataCache cache(final long ttlMillis) {
+        return new VersionMetadataCache(cacheDirectory, localRepository, ttlMillis, new SystemStreamLog());
+    }
+
+    private void installLocally(final String version) throws Exception {
+        final File versionDirectory = new File(localRepository, "test/api/" + version);
+        assertTrue(versionDirectory.mkdirs());
+        assertTrue(new File(versionDirectory, "api-" + version + ".pom").createNewFile());
+    }
+
+    private static List<ArtifactVersion> vs(final String... versions) {
+        final ArtifactVersion[] artifactVersions = new ArtifactVersion[versions.length];
+        for (int i = 0; i < versions.length; i++) {
+            artifactVersions[i] = new DefaultArtifactVersion(versions[i]);
+        }
+        return Arrays.asList(artifactVersions);
+    }
+}
@@ -0,0 +1,101 @@
+package net.distilledcode.maven.baselining;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.aether.RepositorySystemSession;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class VersionMetadataStoreTest {
+
+    private final Artifact artifact = new DefaultArtifact("test", "api", "1.0.2", "compile", "jar", null, new DefaultArtifactHandler("jar"));
+
+    private final AtomicInteger retrievals = new AtomicInteger();
+
+    @Test
+    public void clonedSessionsShareTheStore() {
+        final MavenSession session = createSession();
+        final ArtifactMetadataSource source = createMetadataSource();
+        assertSame(VersionMetadataStore.forSession(session.clone(), source, null, null, new SystemStreamLog()),
+                VersionMetadataStore.forSession(session.clone(), source, null, null, new SystemStreamLog()));
+        assertNotSame(VersionMetadataStore.forSession(session, source, null, null, new SystemStreamLog()),
+                VersionMetadataStore.forSession(createSession(), source, null, null, new SystemStreamLog()));
+    }
+
+    @Test
+    public void versionsAreRetrievedOncePerSession() throws Exception {
+        final MavenSession session = createSession();
+        final ArtifactMetadataSource source = createMetadataSource();
+        final List<ArtifactRepository> repositories = Collections.emptyList();
+        VersionMetadataStore.forSession(session.clone(), source, null, null, new SystemStreamLog())
+                .prefetch(Collections.singletonMap(artifact, repositories));
+        VersionMetadataStore.forSession(session.clone(), source, null, null, new SystemStreamLog())
+                .prefetch(Collections.singletonMap(artifact, repositories));
+
+        final List<ArtifactVersion> versions = VersionMetadataStore.forSession(session.clone(), source, null, null, new SystemStreamLog())
+                .getAvailableVersions(artifact, repositories);
+        assertEquals(Collections.singletonList(new DefaultArtifactVersion("1.0.0")), versions);
+        assertEquals(1, retrievals.get());
+    }
+
+    @Test
+    public void otherCacheConfigurationsAreWarnedAboutOnce() {
+        final MavenSession session = createSession();
+        final ArtifactMetadataSource source = createMetadataSource();
+        final VersionMetadataCache cache = new VersionMetadataCache(new File("cache"), new File("repository"), 1000, null);
+        final WarningLog log = new WarningLog();
+        final VersionMetadataStore store = VersionMetadataStore.forSession(session, source, null, null, log);
+        assertEquals(0, log.warnings);
+        assertSame(store, VersionMetadataStore.forSession(session.clone(), source, null, cache, log));
+        assertSame(store, VersionMetadataStore.forSession(session.clone(), source, null, cache, log));
+        assertEquals(1, log.warnings);
+    }
+
+    private static MavenSession createSession() {
+        return new MavenSession(null, (RepositorySystemSession) null, new DefaultMavenExecutionRequest(),
+                new DefaultMavenExecutionResult());
+    }
+
+    private ArtifactMetadataSource createMetadataSource() {
+        return (ArtifactMetadataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ArtifactMetadataSource.class}, new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (!"retrieveAvailableVersions".equals(method.getName())) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        retrievals.incrementAndGet();
+                        return Collections.<ArtifactVersion>singletonList(new DefaultArtifactVersion("1.0.0"));
+                    }
+                });
+    }
+
+    private static class WarningLog extends SystemStreamLog {
+
+        private int warnings;
+
+        @Override
+        public void warn(final CharSequence content) {
+            warnings++;
+        }
+    }
+}
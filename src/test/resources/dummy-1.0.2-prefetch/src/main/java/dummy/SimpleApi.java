@@ -0,0 +1,11 @@
+package dummy;
+
+public class SimpleApi {
+    public String noChanges() {
+        return null;
+    }
+
+    public String addedMethod() {
+        return null;
+    }
+}
\ No newline at end of file
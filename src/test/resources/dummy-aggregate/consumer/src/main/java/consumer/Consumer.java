@@ -0,0 +1,9 @@
+package consumer;
+
+import dummy.SimpleApi;
+
+public class Consumer {
+    public String consume(SimpleApi api) {
+        return api.noChanges("consumer");
+    }
+}
@@ -0,0 +1,5 @@
+@Export @Version("1.0.0")
+package dummy;
+
+import aQute.bnd.annotation.Export;
+import aQute.bnd.annotation.Version;
@@ -0,0 +1,7 @@
+package dummy;
+
+public class SimpleApi {
+    public String noChanges(String dummyParameter) {
+        return null;
+    }
+}
\ No newline at end of file